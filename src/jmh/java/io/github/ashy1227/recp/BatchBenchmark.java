@@ -0,0 +1,77 @@
+package io.github.ashy1227.recp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Totalling ingredient amounts over many recipes, from decoded recipes and from a {@link RecipeBatch}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+	private static final int RECIPES = 1000;
+	
+	private List<Recipe> recipes;
+	private RecipeBatch batch;
+	
+	@Setup
+	public void setup() {
+		Recipe recipe = BenchmarkRecipes.generate(BenchmarkRecipes.Size.MEDIUM);
+		RECPFile file = new RECPFile(recipe, StandardCharsets.UTF_8);
+		
+		recipes = new ArrayList<>(RECIPES);
+		RecipeBatch.Builder builder = RecipeBatch.builder();
+		for(int i = 0; i < RECIPES; i++) {
+			recipes.add(new Recipe(file));
+			builder.add(file);
+		}
+		batch = builder.build();
+	}
+	
+	@Benchmark
+	public Map<String, Double> sumRecipes() {
+		Map<String, Double> totals = new HashMap<>();
+		for(Recipe recipe : recipes) {
+			for(Ingredient ingredient : recipe.ingredients) {
+				if(UnitConversion.canConvert(ingredient.unit, Unit.MILLILITER)) {
+					totals.merge(ingredient.ingredient, UnitConversion.convert(ingredient.amount.asDouble(), ingredient.unit, Unit.MILLILITER), Double::sum);
+				}
+			}
+		}
+		return totals;
+	}
+	
+	@Benchmark
+	public Map<String, Double> sumBatch() {
+		return batch.sumByIngredient(Unit.MILLILITER);
+	}
+	
+	@Benchmark
+	public double[] amountsIn() {
+		return batch.amountsIn(Unit.MILLILITER);
+	}
+	
+	@Benchmark
+	public RecipeBatch scaleAll() {
+		return batch.scaleAll(Fraction.of(3, 2));
+	}
+}
@@ -0,0 +1,76 @@
+package io.github.ashy1227.recp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic recipe generator for benchmarks
+ */
+public class BenchmarkRecipes {
+	private static final String[] WORDS = {
+		"salt", "water", "butter", "flour", "sugar", "egg", "milk", "rice", "onion", "garlic",
+		"pepper", "oil", "lemon", "cr\u00e8me", "br\u00fbl\u00e9e", "jalape\u00f1o", "stir", "boil", "simmer", "bake"
+	};
+	private static final Unit[] UNITS = {
+		Unit.GRAM, Unit.MILLILITER, Unit.CUSTOMARY_TEASPOON, Unit.CUSTOMARY_TABLESPOON, Unit.CUSTOMARY_CUP, Unit.QUANTITY
+	};
+	
+	/**
+	 * Workload sizes, from a typical recipe card to a file with very large chunks
+	 */
+	public enum Size {
+		SMALL(8, 6, 2),
+		MEDIUM(64, 40, 16),
+		HUGE(8192, 4096, 256);
+		
+		public final int ingredients;
+		public final int steps;
+		/**
+		 * Words per procedure step and description
+		 */
+		public final int words;
+		
+		Size(int ingredients, int steps, int words) {
+			this.ingredients = ingredients;
+			this.steps = steps;
+			this.words = words;
+		}
+	}
+	
+	public static Recipe generate(Size size) {
+		Random random = new Random(size.ordinal());
+		
+		List<Ingredient> ingredients = new ArrayList<>(size.ingredients);
+		for(int i = 0; i < size.ingredients; i++) {
+			ingredients.add(new Ingredient(
+				UNITS[random.nextInt(UNITS.length)],
+				new Fraction((short) (1 + random.nextInt(12)), (short) (1 + random.nextInt(4))),
+				words(random, 1 + random.nextInt(3))
+			));
+		}
+		
+		List<String> procedure = new ArrayList<>(size.steps);
+		for(int i = 0; i < size.steps; i++) {
+			procedure.add(words(random, size.words));
+		}
+		
+		List<String> tags = new ArrayList<>();
+		for(int i = 0; i < 5; i++) {
+			tags.add(words(random, 1));
+		}
+		
+		return new Recipe(ingredients, procedure, words(random, 3), words(random, size.words), words(random, size.words * 4), tags);
+	}
+	
+	private static String words(Random random, int n) {
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < n; i++) {
+			if(i != 0) {
+				sb.append(' ');
+			}
+			sb.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,41 @@
+package io.github.ashy1227.recp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting ingredients for display
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IngredientBenchmark {
+	private List<Ingredient> ingredients;
+	
+	@Setup
+	public void setup() {
+		ingredients = BenchmarkRecipes.generate(BenchmarkRecipes.Size.MEDIUM).ingredients;
+	}
+	
+	@Benchmark
+	public void ingredientToString(Blackhole blackhole) {
+		for(Ingredient ingredient : ingredients) {
+			blackhole.consume(ingredient.toString());
+		}
+	}
+}
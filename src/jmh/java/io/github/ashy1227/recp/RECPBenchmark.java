@@ -0,0 +1,104 @@
+package io.github.ashy1227.recp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode hot paths, for every text encoding and workload size. Run with {@code ./gradlew jmh}; the gc
+ * profiler is enabled in build.gradle so allocation rates are reported next to throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RECPBenchmark {
+	@Param({"SMALL", "MEDIUM", "HUGE"})
+	public BenchmarkRecipes.Size size;
+	
+	@Param({"UTF-8", "UTF-16", "ISO-8859-1", "US-ASCII"})
+	public String charset;
+	
+	private static final Set<Recipe.Part> LISTING = EnumSet.of(Recipe.Part.TITLE, Recipe.Part.DESCRIPTION);
+	
+	private Recipe recipe;
+	private RECPFile file;
+	private byte[] bytes;
+	private RECPEncoder encoder;
+	private ByteBuffer out;
+	private StringPool pool;
+	
+	@Setup
+	public void setup() {
+		Charset charSet = Charset.forName(charset);
+		recipe = BenchmarkRecipes.generate(size);
+		file = new RECPFile(recipe, charSet);
+		bytes = file.toByteArray();
+		encoder = new RECPEncoder(charSet);
+		out = ByteBuffer.allocate(bytes.length * 2);
+		pool = new StringPool(4096);
+	}
+	
+	@Benchmark
+	public RECPFile fromByteArray() {
+		return RECPFile.fromByteArray(bytes);
+	}
+	
+	@Benchmark
+	public Recipe decode() {
+		return new Recipe(file);
+	}
+	
+	@Benchmark
+	public Recipe decodeListing() {
+		return Recipe.decode(file, LISTING);
+	}
+	
+	@Benchmark
+	public Recipe decodePooled() {
+		return Recipe.decode(file, EnumSet.allOf(Recipe.Part.class), pool);
+	}
+	
+	@Benchmark
+	public Recipe fromByteArrayAndDecode() {
+		return new Recipe(RECPFile.fromByteArray(bytes));
+	}
+	
+	@Benchmark
+	public RECPFile encode() {
+		return new RECPFile(recipe, encoder.getCharset());
+	}
+	
+	@Benchmark
+	public byte[] toByteArray() {
+		return file.toByteArray();
+	}
+	
+	@Benchmark
+	public ByteBuffer encodeReused() {
+		return encoder.encode(recipe);
+	}
+	
+	@Benchmark
+	public ByteBuffer encodeInto() {
+		out.clear();
+		encoder.encode(recipe, out);
+		return out;
+	}
+}
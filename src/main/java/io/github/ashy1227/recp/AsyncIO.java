@@ -0,0 +1,161 @@
+package io.github.ashy1227.recp;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Reads and writes whole files on {@link AsynchronousFileChannel}s, so no thread waits on the disk
+ */
+final class AsyncIO {
+	private AsyncIO() {}
+	
+	/**
+	 * Read a whole file into a pooled buffer and convert it. The buffer is returned to the pool once the conversion
+	 * is done, so the result must not keep a reference to it.
+	 */
+	static <T> CompletableFuture<T> read(Path path, Function<ByteBuffer, T> convert) {
+		RECPListener l = RECPListener.get();
+		long start = l == null ? 0 : System.nanoTime();
+		BufferPool pool = BufferPool.getDefault();
+		CompletableFuture<T> future = new CompletableFuture<>();
+		AsynchronousFileChannel channel;
+		ByteBuffer b;
+		try {
+			channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+		} catch(IOException | RuntimeException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+		try {
+			long size = channel.size();
+			if(size > Integer.MAX_VALUE) {
+				throw new IOException(String.format("File %s is too large to read", path));
+			}
+			b = pool.acquire((int) size);
+		} catch(IOException | RuntimeException e) {
+			close(channel, e);
+			return CompletableFuture.failedFuture(e);
+		}
+		
+		channel.read(b, 0, 0L, new CompletionHandler<>() {
+			@Override
+			public void completed(Integer read, Long position) {
+				if(read < 0) {
+					failed(new EOFException(String.format("File %s was truncated while reading", path)), position);
+					return;
+				}
+				if(b.hasRemaining()) {
+					long next = position + read;
+					channel.read(b, next, next, this);
+					return;
+				}
+				
+				Throwable error = close(channel, null);
+				try {
+					if(error != null) {
+						future.completeExceptionally(error);
+					} else {
+						if(l != null) {
+							l.phase(RECPListener.Phase.READ, System.nanoTime() - start, b.position(), 0);
+						}
+						future.complete(convert.apply(b.flip()));
+					}
+				} catch(RuntimeException e) {
+					future.completeExceptionally(e);
+				} finally {
+					pool.release(b);
+				}
+			}
+			
+			@Override
+			public void failed(Throwable e, Long position) {
+				pool.release(b);
+				future.completeExceptionally(close(channel, e));
+			}
+		});
+		return future;
+	}
+	
+	/**
+	 * Encode a Recipe into a pooled buffer and write it to a file, replacing its contents
+	 *
+	 * @throws IllegalArgumentException if charSet isn't a valid RECP character encoding
+	 */
+	static CompletableFuture<Void> write(Path path, Recipe recipe, Charset charSet) {
+		BufferPool pool = BufferPool.getDefault();
+		ByteBuffer src;
+		try {
+			src = new RECPEncoder(charSet).encode(recipe, pool);
+		} catch(RuntimeException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+		
+		RECPListener l = RECPListener.get();
+		long start = l == null ? 0 : System.nanoTime();
+		int size = src.remaining();
+		ByteBuffer file = src.duplicate();
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		AsynchronousFileChannel channel;
+		try {
+			channel = AsynchronousFileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		} catch(IOException | RuntimeException e) {
+			pool.release(src);
+			return CompletableFuture.failedFuture(e);
+		}
+		
+		channel.write(src, 0, 0L, new CompletionHandler<>() {
+			@Override
+			public void completed(Integer written, Long position) {
+				if(src.hasRemaining()) {
+					long next = position + written;
+					channel.write(src, next, next, this);
+					return;
+				}
+				if(l != null) {
+					RECPEncoder.chunksWritten(l, file);
+				}
+				pool.release(src);
+				Throwable error = close(channel, null);
+				if(error != null) {
+					future.completeExceptionally(error);
+				} else {
+					if(l != null) {
+						l.phase(RECPListener.Phase.WRITE, System.nanoTime() - start, size, 0);
+					}
+					future.complete(null);
+				}
+			}
+			
+			@Override
+			public void failed(Throwable e, Long position) {
+				pool.release(src);
+				future.completeExceptionally(close(channel, e));
+			}
+		});
+		return future;
+	}
+	
+	/**
+	 * Close a channel, adding any error to the one that's already happened
+	 *
+	 * @return the error to report, or null if there wasn't one
+	 */
+	private static Throwable close(AsynchronousFileChannel channel, Throwable error) {
+		try {
+			channel.close();
+		} catch(IOException e) {
+			if(error == null) {
+				return e;
+			}
+			error.addSuppressed(e);
+		}
+		return error;
+	}
+}
@@ -0,0 +1,186 @@
+package io.github.ashy1227.recp;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of reusable byte buffers for the reader, writer, encoder and asynchronous I/O
+ * <p>
+ * Buffers come in power-of-two size classes from {@link #MIN_SIZE} to {@link #MAX_SIZE} bytes, and a request gets a
+ * buffer from the smallest class that fits it. Free buffers are kept in several stripes, picked by thread, each with a
+ * small stack per size class, so threads rarely contend for the same lock. Requests larger than the largest class get
+ * a new buffer that isn't kept when released.
+ * <p>
+ * A pool holds either direct or heap buffers. The {@link #getDefault() default pool} holds direct buffers, which
+ * channels can read into and write from without an extra copy, and can be replaced to tune or disable pooling.
+ */
+public class BufferPool {
+	public static final int MIN_SIZE = 512;
+	public static final int MAX_SIZE = 1 << 20;
+	private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_SIZE);
+	private static final int SIZE_CLASSES = Integer.numberOfTrailingZeros(MAX_SIZE) - MIN_SHIFT + 1;
+	
+	private static volatile BufferPool defaultPool = new BufferPool(true, 8);
+	
+	private final boolean direct;
+	private final Stripe[] stripes;
+	private final int mask;
+	
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final AtomicLong outstanding = new AtomicLong();
+	
+	/**
+	 * @param direct       whether to pool direct buffers rather than heap buffers
+	 * @param maxPerStripe most free buffers of each size class kept per stripe; 0 to never keep any
+	 */
+	public BufferPool(boolean direct, int maxPerStripe) {
+		if(maxPerStripe < 0) {
+			throw new IllegalArgumentException(String.format("Invalid buffers per stripe %d", maxPerStripe));
+		}
+		this.direct = direct;
+		
+		int n = Integer.highestOneBit(Math.max(Runtime.getRuntime().availableProcessors(), 1) * 2 - 1);
+		this.stripes = new Stripe[n];
+		for(int i = 0; i < n; i++) {
+			stripes[i] = new Stripe(maxPerStripe);
+		}
+		this.mask = n - 1;
+	}
+	
+	/**
+	 * The pool used when none is given
+	 */
+	public static BufferPool getDefault() {
+		return defaultPool;
+	}
+	
+	public static void setDefault(@NotNull BufferPool pool) {
+		defaultPool = pool;
+	}
+	
+	/**
+	 * Borrow a buffer with room for at least size bytes. It is cleared, with its limit set to size.
+	 */
+	public ByteBuffer acquire(int size) {
+		if(size < 0) {
+			throw new IllegalArgumentException(String.format("Invalid buffer size %d", size));
+		}
+		if(size > MAX_SIZE) {
+			misses.increment();
+			return allocate(size);
+		}
+		
+		outstanding.incrementAndGet();
+		int sizeClass = sizeClass(size);
+		ByteBuffer b = stripe().pop(sizeClass);
+		if(b == null) {
+			misses.increment();
+			b = allocate(MIN_SIZE << sizeClass);
+		} else {
+			hits.increment();
+		}
+		return b.clear().limit(size);
+	}
+	
+	/**
+	 * Return a buffer borrowed with {@link #acquire(int)}, exactly once. Neither it nor any view of it may be used
+	 * afterwards. Buffers that don't match a size class of this pool, such as ones too large to pool, are ignored.
+	 *
+	 * @throws IllegalStateException if more buffers are released than were acquired, or the buffer is already free in
+	 *                               this thread's stripe; either way it was released twice or didn't come from here
+	 */
+	public void release(@NotNull ByteBuffer b) {
+		int capacity = b.capacity();
+		if(b.isDirect() != direct || b.isReadOnly() || capacity > MAX_SIZE || capacity < MIN_SIZE || Integer.bitCount(capacity) != 1) {
+			return;
+		}
+		// Pooling it again would hand the same buffer to two borrowers
+		if(outstanding.getAndUpdate(n -> n > 0 ? n - 1 : n) == 0) {
+			throw new IllegalStateException("More buffers released than acquired");
+		}
+		if(!stripe().push(sizeClass(capacity), b)) {
+			outstanding.incrementAndGet();
+			throw new IllegalStateException("Buffer released twice");
+		}
+	}
+	
+	public boolean isDirect() {
+		return direct;
+	}
+	
+	/**
+	 * Number of requests served from a free buffer
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+	
+	/**
+	 * Number of requests that allocated a new buffer
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+	
+	/**
+	 * Number of buffers borrowed from a size class and not yet released. Buffers larger than {@link #MAX_SIZE} aren't
+	 * counted, since they aren't pooled.
+	 */
+	public long getOutstanding() {
+		return outstanding.get();
+	}
+	
+	private ByteBuffer allocate(int size) {
+		return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+	}
+	
+	@SuppressWarnings("deprecation") // Thread.threadId() only exists from Java 19
+	private Stripe stripe() {
+		return stripes[(int) Thread.currentThread().getId() & mask];
+	}
+	
+	private static int sizeClass(int size) {
+		return size <= MIN_SIZE ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+	}
+	
+	/**
+	 * Free buffers of every size class, as stacks
+	 */
+	private static final class Stripe {
+		final ByteBuffer[][] free;
+		final int[] counts = new int[SIZE_CLASSES];
+		
+		Stripe(int maxPerStripe) {
+			free = new ByteBuffer[SIZE_CLASSES][maxPerStripe];
+		}
+		
+		synchronized ByteBuffer pop(int sizeClass) {
+			if(counts[sizeClass] == 0) {
+				return null;
+			}
+			ByteBuffer b = free[sizeClass][--counts[sizeClass]];
+			free[sizeClass][counts[sizeClass]] = null;
+			return b;
+		}
+		
+		/**
+		 * @return false if the buffer is already free here
+		 */
+		synchronized boolean push(int sizeClass, ByteBuffer b) {
+			ByteBuffer[] stack = free[sizeClass];
+			for(int i = 0; i < counts[sizeClass]; i++) {
+				if(stack[i] == b) {
+					return false;
+				}
+			}
+			if(counts[sizeClass] < stack.length) {
+				stack[counts[sizeClass]++] = b;
+			}
+			return true;
+		}
+	}
+}
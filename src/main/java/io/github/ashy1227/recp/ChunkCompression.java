@@ -0,0 +1,112 @@
+package io.github.ashy1227.recp;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Wraps chunks in {@link RECPFile.ChunkType#defl defl} chunks and back
+ */
+final class ChunkCompression {
+	/**
+	 * Size of a defl chunk's header: wrapped type, uncompressed size and dictionary id
+	 */
+	static final int HEADER_SIZE = 12;
+	/**
+	 * Deflate can't compress better than this, so a larger uncompressed size is a lie
+	 */
+	static final int MAX_RATIO = 1032;
+	
+	private static final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+	
+	private ChunkCompression() {}
+	
+	static RECPFile.Chunk compress(RECPFile.Chunk chunk, @Nullable ChunkDictionary dictionary, int level) {
+		checkWrappable(chunk.type);
+		ByteBuffer src = chunk.data.duplicate();
+		
+		Deflater deflater = new Deflater(level, true);
+		try {
+			if(dictionary != null) {
+				deflater.setDictionary(dictionary.bytes);
+			}
+			deflater.setInput(src);
+			deflater.finish();
+			
+			// Enough for incompressible data in one go
+			ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + src.remaining() + src.remaining() / 1000 + 64);
+			out.putInt(chunk.type);
+			out.putInt(src.remaining());
+			out.putInt(dictionary == null ? 0 : dictionary.getId());
+			while(!deflater.finished()) {
+				if(!out.hasRemaining()) {
+					out = ByteBuffer.allocate(out.capacity() * 2).put(out.flip());
+				}
+				deflater.deflate(out);
+			}
+			return new RECPFile.Chunk(RECPFile.ChunkType.defl, out.flip());
+		} finally {
+			deflater.end();
+		}
+	}
+	
+	static RECPFile.Chunk decompress(RECPFile.Chunk chunk) {
+		ByteBuffer b = chunk.data.duplicate();
+		int type = contentType(b, b.remaining());
+		b.getInt();
+		int size = b.getInt();
+		int id = b.getInt();
+		if(size < 0 || size > (long) b.remaining() * MAX_RATIO + 64) {
+			throw new IllegalArgumentException(String.format("Invalid uncompressed size %d for compressed %s chunk", size, RECPFile.ChunkType.toString(type)));
+		}
+		
+		Inflater inflater = inflaters.get();
+		inflater.reset();
+		if(id != 0) {
+			ChunkDictionary dictionary = ChunkDictionary.get(id);
+			if(dictionary == null) {
+				throw new IllegalArgumentException(String.format("Compressed %s chunk needs unknown dictionary %08x", RECPFile.ChunkType.toString(type), id));
+			}
+			inflater.setDictionary(dictionary.bytes);
+		}
+		inflater.setInput(b);
+		
+		ByteBuffer out = ByteBuffer.allocate(size);
+		try {
+			while(out.hasRemaining() && !inflater.finished()) {
+				if(inflater.inflate(out) == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+			}
+		} catch(DataFormatException e) {
+			throw new IllegalArgumentException(String.format("Invalid compressed %s chunk", RECPFile.ChunkType.toString(type)), e);
+		}
+		if(out.hasRemaining()) {
+			throw new IllegalArgumentException(String.format("Compressed %s chunk is shorter than its size %d", RECPFile.ChunkType.toString(type), size));
+		}
+		return new RECPFile.Chunk(type, out.flip());
+	}
+	
+	/**
+	 * Type of the chunk wrapped by the defl chunk data at b's position
+	 *
+	 * @throws IllegalArgumentException if the data is too small for its header or wraps a type that can't be wrapped
+	 */
+	static int contentType(ByteBuffer b, int size) {
+		if(size < HEADER_SIZE) {
+			throw new IllegalArgumentException(String.format("Compressed chunk of %d bytes is too small for its header", size));
+		}
+		int type = b.getInt(b.position());
+		checkWrappable(type);
+		return type;
+	}
+	
+	private static void checkWrappable(int type) {
+		if(type == RECPFile.ChunkType.META || type == RECPFile.ChunkType.END || type == RECPFile.ChunkType.defl) {
+			throw new IllegalArgumentException(String.format("%s chunk can't be compressed", RECPFile.ChunkType.toString(type)));
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package io.github.ashy1227.recp;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Adler32;
+
+/**
+ * Preset dictionary for compressed chunks
+ * <p>
+ * Deflate can refer back to a dictionary as if it came just before the data, so short chunks that share phrases with
+ * the rest of a corpus ("preheat the oven", "salt and pepper") compress far better than they would alone. Compressed
+ * chunks only store the dictionary's id, its Adler-32 checksum, so a dictionary must be {@link #register registered}
+ * before chunks compressed with it can be read.
+ *
+ * @see RECPFile#compress(ChunkDictionary, int...)
+ */
+public final class ChunkDictionary {
+	/**
+	 * Deflate only looks back this far, so a longer dictionary is wasted
+	 */
+	public static final int MAX_SIZE = 32 * 1024;
+	
+	private static final Map<Integer, ChunkDictionary> registered = new ConcurrentHashMap<>();
+	
+	final byte[] bytes;
+	private final int id;
+	
+	/**
+	 * @param bytes dictionary contents, most useful phrases last
+	 * @throws IllegalArgumentException if the dictionary is empty or longer than {@link #MAX_SIZE}
+	 */
+	public ChunkDictionary(byte[] bytes) {
+		if(bytes.length == 0 || bytes.length > MAX_SIZE) {
+			throw new IllegalArgumentException(String.format("Invalid dictionary size %d", bytes.length));
+		}
+		this.bytes = bytes.clone();
+		
+		Adler32 adler = new Adler32();
+		adler.update(this.bytes);
+		this.id = (int) adler.getValue();
+		if(id == 0) {
+			// 0 means no dictionary
+			throw new IllegalArgumentException("Dictionary checksum is 0");
+		}
+	}
+	
+	/**
+	 * Build a dictionary from the words and word pairs that make up the most text in some chunks of a corpus
+	 *
+	 * @param size  largest size of the dictionary in bytes
+	 * @param types chunk types to learn from, e.g. PROC and ldsc
+	 * @throws IllegalArgumentException if size is invalid or the chunks have nothing that repeats
+	 */
+	public static ChunkDictionary train(Iterable<RECPFile> files, int size, int... types) {
+		if(size <= 0 || size > MAX_SIZE) {
+			throw new IllegalArgumentException(String.format("Invalid dictionary size %d", size));
+		}
+		
+		// ISO-8859-1 maps bytes to chars one to one, so this works on the encoded bytes whatever the text encoding
+		Map<String, Integer> counts = new HashMap<>();
+		for(RECPFile file : files) {
+			for(int type : types) {
+				RECPFile.Chunk c = file.getChunk(type);
+				if(c == null) {
+					continue;
+				}
+				ByteBuffer data = c.data.duplicate();
+				byte[] text = new byte[data.remaining()];
+				data.get(text);
+				String[] words = new String(text, StandardCharsets.ISO_8859_1).split("[\\s\\x00-\\x1f]+");
+				for(int i = 0; i < words.length; i++) {
+					if(words[i].length() < 3) {
+						continue;
+					}
+					counts.merge(words[i] + " ", 1, Integer::sum);
+					if(i + 1 < words.length && !words[i + 1].isEmpty()) {
+						counts.merge(words[i] + " " + words[i + 1] + " ", 1, Integer::sum);
+					}
+				}
+			}
+		}
+		
+		// Score by how many bytes each phrase covers, ignoring phrases seen only once
+		List<Map.Entry<String, Integer>> phrases = new ArrayList<>();
+		for(Map.Entry<String, Integer> e : counts.entrySet()) {
+			if(e.getValue() > 1) {
+				phrases.add(Map.entry(e.getKey(), e.getValue() * e.getKey().length()));
+			}
+		}
+		phrases.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+		
+		List<String> chosen = new ArrayList<>();
+		int length = 0;
+		for(Map.Entry<String, Integer> e : phrases) {
+			if(length + e.getKey().length() <= size) {
+				chosen.add(e.getKey());
+				length += e.getKey().length();
+			}
+		}
+		if(chosen.isEmpty()) {
+			throw new IllegalArgumentException("Nothing repeats in the corpus to build a dictionary from");
+		}
+		
+		// Deflate reaches the end of the dictionary with the shortest distances, so the best phrases go last
+		byte[] bytes = new byte[length];
+		int p = length;
+		for(String phrase : chosen) {
+			p -= phrase.length();
+			System.arraycopy(phrase.getBytes(StandardCharsets.ISO_8859_1), 0, bytes, p, phrase.length());
+		}
+		return new ChunkDictionary(bytes);
+	}
+	
+	/**
+	 * Make a dictionary available for decompressing chunks
+	 */
+	public static void register(ChunkDictionary dictionary) {
+		registered.put(dictionary.id, dictionary);
+	}
+	
+	public static void unregister(ChunkDictionary dictionary) {
+		registered.remove(dictionary.id, dictionary);
+	}
+	
+	/**
+	 * The registered dictionary with an id, or null if there isn't one
+	 */
+	@Nullable
+	public static ChunkDictionary get(int id) {
+		return registered.get(id);
+	}
+	
+	/**
+	 * Adler-32 checksum of the dictionary, stored in chunks compressed with it
+	 */
+	public int getId() {
+		return id;
+	}
+	
+	/**
+	 * Copy of the dictionary contents, e.g. to save alongside an archive
+	 */
+	public byte[] getBytes() {
+		return bytes.clone();
+	}
+	
+	public int size() {
+		return bytes.length;
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof ChunkDictionary d && id == d.id && Arrays.equals(bytes, d.bytes);
+	}
+	
+	@Override
+	public int hashCode() {
+		return id;
+	}
+}
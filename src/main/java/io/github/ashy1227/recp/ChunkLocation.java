@@ -0,0 +1,131 @@
+package io.github.ashy1227.recp;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Where a chunk is in a RECP file on disk
+ */
+public class ChunkLocation {
+	public final int type;
+	/**
+	 * Type of the chunk's content: the wrapped type for a compressed chunk, otherwise the same as type
+	 */
+	public final int contentType;
+	/**
+	 * Offset of the chunk's header from the start of the file
+	 */
+	public final long offset;
+	/**
+	 * Size of the chunk's data, not counting the 8-byte header
+	 */
+	public final int size;
+	
+	public ChunkLocation(int type, int contentType, long offset, int size) {
+		this.type = type;
+		this.contentType = contentType;
+		this.offset = offset;
+		this.size = size;
+	}
+	
+	public ChunkLocation(int type, long offset, int size) {
+		this(type, type, offset, size);
+	}
+	
+	/**
+	 * Offset of the chunk's data from the start of the file
+	 */
+	public long dataOffset() {
+		return offset + 8;
+	}
+	
+	/**
+	 * Offset just past the end of the chunk
+	 */
+	public long end() {
+		return offset + 8 + size;
+	}
+	
+	/**
+	 * Find every chunk in a file by reading only the chunk headers
+	 *
+	 * @param start offset of the file signature in the channel
+	 * @return the location of every chunk up to and including END
+	 * @throws IllegalArgumentException if the signature is invalid, the first chunk isn't META or a chunk size is
+	 *                                  invalid
+	 * @throws EOFException if the channel ends before the END chunk
+	 * @throws IOException if error occurs reading from the channel
+	 */
+	public static List<ChunkLocation> scan(FileChannel channel, long start) throws IOException {
+		ByteBuffer b = ByteBuffer.allocate(8);
+		long end = channel.size();
+		
+		readFully(channel, b.limit(4), start);
+		if(b.flip().getInt() != RECPFile.SIGNATURE) {
+			throw new IllegalArgumentException("Invalid file signature");
+		}
+		
+		List<ChunkLocation> chunks = new ArrayList<>();
+		long offset = start + 4;
+		while(true) {
+			readFully(channel, b.clear(), offset);
+			b.flip();
+			int size = b.getInt();
+			int type = b.getInt();
+			
+			if(chunks.isEmpty() && type != RECPFile.ChunkType.META) {
+				throw new IllegalArgumentException("Invalid chunk ordering; META chunk must appear first");
+			}
+			if(size < 0 || offset + 8 + size > end) {
+				throw new IllegalArgumentException(String.format("Invalid size %d for chunk at offset %d", size, offset));
+			}
+			
+			int contentType = type;
+			if(type == RECPFile.ChunkType.defl && size >= 4) {
+				readFully(channel, b.clear().limit(4), offset + 8);
+				contentType = b.flip().getInt();
+			}
+			
+			ChunkLocation location = new ChunkLocation(type, contentType, offset, size);
+			chunks.add(location);
+			if(type == RECPFile.ChunkType.END) {
+				return chunks;
+			}
+			offset = location.end();
+		}
+	}
+	
+	/**
+	 * Find every chunk in a file by reading only the chunk headers
+	 *
+	 * @see #scan(FileChannel, long)
+	 */
+	public static List<ChunkLocation> scan(FileChannel channel) throws IOException {
+		return scan(channel, 0);
+	}
+	
+	static void readFully(FileChannel channel, ByteBuffer dst, long position) throws IOException {
+		while(dst.hasRemaining()) {
+			int n = channel.read(dst, position);
+			if(n < 0) {
+				throw new EOFException("File ended before END chunk");
+			}
+			position += n;
+		}
+	}
+	
+	static void writeFully(FileChannel channel, ByteBuffer src, long position) throws IOException {
+		while(src.hasRemaining()) {
+			position += channel.write(src, position);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%s at %d (%d bytes)", RECPFile.ChunkType.toString(type), offset, size);
+	}
+}
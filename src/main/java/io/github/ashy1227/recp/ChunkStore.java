@@ -0,0 +1,548 @@
+package io.github.ashy1227.recp;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deduplicating store of recipes, where every distinct chunk is kept once and recipes refer to their chunks by hash
+ * <p>
+ * A chunk's hash is the SHA-256 of its type and data, and a recipe's hash is the SHA-256 of its chunks' hashes in
+ * order. Recipes that share a PROC or INGR chunk store it once, and two recipes are the same exactly when their
+ * {@link #hash(RECPFile) hashes} are equal, which takes no decoding. Compressing a chunk changes its hash.
+ * <p>
+ * The store is a single append-only pack file. Records are only ever added, so a crash can at worst leave a partial
+ * record at the end, which is cut off on the next open. A hash to offset index is kept in memory and saved next to
+ * the pack on {@link #close()}; if it's missing or out of date, the pack is scanned to rebuild it.
+ * <p>
+ * Chunks read from the store are shared: while any recipe got from the store still holds a chunk, getting another
+ * recipe with that chunk returns the same instance instead of reading a second copy, so recipes that share a PROC or
+ * INGR chunk share it in memory too.
+ * <pre>
+ * signature  int       "RCPS"
+ * records    record[]  byte kind (0 chunk, 1 recipe), 32 byte hash, int length, then length bytes of body
+ *            chunk     int type, then the chunk's data
+ *            recipe    32 byte hash of each of its chunks, in order
+ * </pre>
+ */
+public class ChunkStore implements Closeable {
+	/**
+	 * Pack file signature
+	 */
+	public static final int SIGNATURE = 0x52435053;
+	/**
+	 * Index file signature
+	 */
+	public static final int INDEX_SIGNATURE = 0x52435349;
+	
+	protected static final byte CHUNK = 0;
+	protected static final byte RECIPE = 1;
+	protected static final int RECORD_HEADER_SIZE = 1 + Hash.SIZE + 4;
+	
+	private static final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch(NoSuchAlgorithmException e) {
+			// Every Java platform has SHA-256
+			throw new IllegalStateException(e);
+		}
+	});
+	
+	protected final Path path;
+	protected final FileChannel channel;
+	protected final Map<Hash, Long> chunks = new HashMap<>();
+	protected final Map<Hash, Long> recipes = new HashMap<>();
+	/**
+	 * Chunks that have been read and are still in use somewhere
+	 */
+	private final Map<Hash, LoadedChunk> loaded = new HashMap<>();
+	private final ReferenceQueue<RECPFile.Chunk> unused = new ReferenceQueue<>();
+	/**
+	 * Size of the pack, where the next record goes
+	 */
+	protected long end;
+	private boolean indexCurrent;
+	
+	protected ChunkStore(Path path, FileChannel channel) throws IOException {
+		this.path = path;
+		this.channel = channel;
+		this.end = channel.size();
+		
+		if(end == 0) {
+			ChunkLocation.writeFully(channel, ByteBuffer.allocate(4).putInt(SIGNATURE).flip(), 0);
+			end = 4;
+			return;
+		}
+		
+		if(end < 4) {
+			throw new IllegalArgumentException("Invalid store signature");
+		}
+		ByteBuffer signature = ByteBuffer.allocate(4);
+		ChunkLocation.readFully(channel, signature, 0);
+		if(signature.flip().getInt() != SIGNATURE) {
+			throw new IllegalArgumentException("Invalid store signature");
+		}
+		
+		indexCurrent = loadIndex();
+		if(!indexCurrent) {
+			scan();
+		}
+	}
+	
+	/**
+	 * Open a store, creating it if the file doesn't exist
+	 *
+	 * @throws IllegalArgumentException if the file isn't a valid store
+	 * @throws IOException if error occurs opening or reading the file
+	 */
+	public static ChunkStore open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			return new ChunkStore(path, channel);
+		} catch(IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Hash of a chunk's type and data
+	 */
+	public static Hash hash(RECPFile.Chunk chunk) {
+		MessageDigest digest = digests.get();
+		digest.update(ByteBuffer.allocate(4).putInt(chunk.type).flip());
+		digest.update(chunk.data.duplicate());
+		return new Hash(digest.digest());
+	}
+	
+	/**
+	 * Hash of a recipe: the hash of its chunks' hashes, in order. Equal for recipes with the same chunks in the same
+	 * order.
+	 */
+	public static Hash hash(RECPFile file) {
+		return hashManifest(hashChunks(file));
+	}
+	
+	/**
+	 * Store a recipe. Chunks that are already stored aren't stored again.
+	 *
+	 * @return the recipe's hash, to get it back with
+	 * @throws IOException if error occurs writing the pack
+	 */
+	public synchronized Hash put(RECPFile file) throws IOException {
+		List<Hash> manifest = hashChunks(file);
+		Hash hash = hashManifest(manifest);
+		if(recipes.containsKey(hash)) {
+			return hash;
+		}
+		
+		for(int i = 0; i < manifest.size(); i++) {
+			putChunk(manifest.get(i), file.chunks.get(i));
+		}
+		
+		ByteBuffer body = ByteBuffer.allocate(manifest.size() * Hash.SIZE);
+		for(Hash h : manifest) {
+			body.put(h.bytes);
+		}
+		recipes.put(hash, append(RECIPE, hash, body.flip()));
+		return hash;
+	}
+	
+	/**
+	 * Store a single chunk, if it isn't stored already
+	 *
+	 * @return the chunk's hash
+	 * @throws IOException if error occurs writing the pack
+	 */
+	public synchronized Hash put(RECPFile.Chunk chunk) throws IOException {
+		Hash hash = hash(chunk);
+		putChunk(hash, chunk);
+		return hash;
+	}
+	
+	/**
+	 * Get a stored recipe back. Its chunks are read into memory, so the file stays valid after the store is closed.
+	 *
+	 * @return the recipe, or null if there's no recipe with that hash
+	 * @throws IOException if error occurs reading the pack
+	 */
+	@Nullable
+	public synchronized RECPFile get(Hash hash) throws IOException {
+		Long offset = recipes.get(hash);
+		if(offset == null) {
+			return null;
+		}
+		ByteBuffer body = readBody(offset);
+		
+		List<RECPFile.Chunk> list = new ArrayList<>(body.remaining() / Hash.SIZE);
+		byte[] h = new byte[Hash.SIZE];
+		while(body.hasRemaining()) {
+			body.get(h);
+			RECPFile.Chunk chunk = getChunk(new Hash(h.clone()));
+			if(chunk == null) {
+				throw new IllegalArgumentException(String.format("Recipe %s refers to missing chunk %s", hash, new Hash(h)));
+			}
+			list.add(chunk);
+		}
+		return new RECPFile(list);
+	}
+	
+	/**
+	 * Get a stored chunk. If the chunk is still in use from an earlier call, the same instance is returned.
+	 *
+	 * @return the chunk, or null if there's no chunk with that hash
+	 * @throws IOException if error occurs reading the pack
+	 */
+	@Nullable
+	public synchronized RECPFile.Chunk getChunk(Hash hash) throws IOException {
+		// Forget chunks nothing holds any more
+		for(Reference<?> ref; (ref = unused.poll()) != null; ) {
+			loaded.remove(((LoadedChunk) ref).hash, ref);
+		}
+		
+		LoadedChunk ref = loaded.get(hash);
+		RECPFile.Chunk chunk = ref == null ? null : ref.get();
+		if(chunk != null) {
+			return chunk;
+		}
+		
+		Long offset = chunks.get(hash);
+		if(offset == null) {
+			return null;
+		}
+		ByteBuffer body = readBody(offset);
+		int type = body.getInt();
+		chunk = new RECPFile.Chunk(type, body.slice());
+		loaded.put(hash, new LoadedChunk(hash, chunk, unused));
+		return chunk;
+	}
+	
+	/**
+	 * Number of chunks read from the store that are still held in memory and will be shared rather than read again
+	 */
+	public synchronized int loadedChunkCount() {
+		return (int) loaded.values().stream().filter(ref -> ref.get() != null).count();
+	}
+	
+	/**
+	 * The hashes of a stored recipe's chunks, in order
+	 *
+	 * @return the hashes, or null if there's no recipe with that hash
+	 * @throws IOException if error occurs reading the pack
+	 */
+	@Nullable
+	public synchronized List<Hash> getManifest(Hash hash) throws IOException {
+		Long offset = recipes.get(hash);
+		if(offset == null) {
+			return null;
+		}
+		ByteBuffer body = readBody(offset);
+		List<Hash> manifest = new ArrayList<>(body.remaining() / Hash.SIZE);
+		while(body.hasRemaining()) {
+			byte[] h = new byte[Hash.SIZE];
+			body.get(h);
+			manifest.add(new Hash(h));
+		}
+		return manifest;
+	}
+	
+	public synchronized boolean contains(Hash hash) {
+		return recipes.containsKey(hash) || chunks.containsKey(hash);
+	}
+	
+	/**
+	 * Number of stored recipes
+	 */
+	public synchronized int size() {
+		return recipes.size();
+	}
+	
+	/**
+	 * Number of distinct stored chunks
+	 */
+	public synchronized int chunkCount() {
+		return chunks.size();
+	}
+	
+	/**
+	 * Size of the pack file in bytes
+	 */
+	public synchronized long getPackSize() {
+		return end;
+	}
+	
+	/**
+	 * Force the pack to disk and save the index
+	 *
+	 * @throws IOException if error occurs writing either file
+	 */
+	public synchronized void flush() throws IOException {
+		channel.force(false);
+		if(!indexCurrent) {
+			saveIndex();
+			indexCurrent = true;
+		}
+	}
+	
+	/**
+	 * Save the index and close the pack
+	 *
+	 * @throws IOException if error occurs writing the index or closing the pack
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if(!channel.isOpen()) {
+			return;
+		}
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+	
+	private void putChunk(Hash hash, RECPFile.Chunk chunk) throws IOException {
+		if(chunks.containsKey(hash)) {
+			return;
+		}
+		ByteBuffer body = ByteBuffer.allocate(4 + chunk.data.remaining());
+		body.putInt(chunk.type).put(chunk.data.duplicate());
+		chunks.put(hash, append(CHUNK, hash, body.flip()));
+	}
+	
+	/**
+	 * Append a record to the pack
+	 *
+	 * @return offset of the record
+	 */
+	private long append(byte kind, Hash hash, ByteBuffer body) throws IOException {
+		long offset = end;
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		header.put(kind).put(hash.bytes).putInt(body.remaining()).flip();
+		ChunkLocation.writeFully(channel, header, offset);
+		ChunkLocation.writeFully(channel, body, offset + RECORD_HEADER_SIZE);
+		end = offset + RECORD_HEADER_SIZE + body.limit();
+		indexCurrent = false;
+		return offset;
+	}
+	
+	private ByteBuffer readBody(long offset) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		ChunkLocation.readFully(channel, header, offset);
+		int length = header.getInt(1 + Hash.SIZE);
+		if(length < 0 || offset + RECORD_HEADER_SIZE + length > end) {
+			throw new IllegalArgumentException(String.format("Invalid record at offset %d", offset));
+		}
+		ByteBuffer body = ByteBuffer.allocate(length);
+		ChunkLocation.readFully(channel, body, offset + RECORD_HEADER_SIZE);
+		return body.flip();
+	}
+	
+	/**
+	 * Rebuild the index by reading every record header, and cut off a partial record left at the end by a crash
+	 */
+	private void scan() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		long offset = 4;
+		while(offset + RECORD_HEADER_SIZE <= end) {
+			ChunkLocation.readFully(channel, header.clear(), offset);
+			header.flip();
+			byte kind = header.get();
+			byte[] h = new byte[Hash.SIZE];
+			header.get(h);
+			int length = header.getInt();
+			if((kind != CHUNK && kind != RECIPE) || length < 0 || offset + RECORD_HEADER_SIZE + length > end) {
+				break;
+			}
+			(kind == CHUNK ? chunks : recipes).putIfAbsent(new Hash(h), offset);
+			offset += RECORD_HEADER_SIZE + length;
+		}
+		if(offset < end) {
+			channel.truncate(offset);
+			end = offset;
+		}
+	}
+	
+	private Path indexPath() {
+		return path.resolveSibling(path.getFileName() + ".idx");
+	}
+	
+	/**
+	 * Load the saved index if it matches the pack
+	 *
+	 * @return false if there's no saved index or it's out of date
+	 */
+	private boolean loadIndex() throws IOException {
+		Path index = indexPath();
+		if(!Files.exists(index)) {
+			return false;
+		}
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(index)))) {
+			if(in.readInt() != INDEX_SIGNATURE || in.readLong() != end) {
+				return false;
+			}
+			readEntries(in, chunks);
+			readEntries(in, recipes);
+			return true;
+		} catch(IOException | IllegalArgumentException e) {
+			// Rebuild from the pack instead
+			chunks.clear();
+			recipes.clear();
+			return false;
+		}
+	}
+	
+	private void saveIndex() throws IOException {
+		Path index = indexPath();
+		Path tmp = Files.createTempFile(index.toAbsolutePath().getParent(), index.getFileName().toString(), ".tmp");
+		try {
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+				out.writeInt(INDEX_SIGNATURE);
+				out.writeLong(end);
+				writeEntries(out, chunks);
+				writeEntries(out, recipes);
+			}
+			Files.move(tmp, index, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+	
+	private static void writeEntries(DataOutputStream out, Map<Hash, Long> entries) throws IOException {
+		out.writeInt(entries.size());
+		for(Map.Entry<Hash, Long> e : entries.entrySet()) {
+			out.write(e.getKey().bytes);
+			out.writeLong(e.getValue());
+		}
+	}
+	
+	private void readEntries(DataInputStream in, Map<Hash, Long> entries) throws IOException {
+		int count = in.readInt();
+		if(count < 0) {
+			throw new IllegalArgumentException(String.format("Invalid entry count %d", count));
+		}
+		for(int i = 0; i < count; i++) {
+			byte[] h = new byte[Hash.SIZE];
+			in.readFully(h);
+			long offset = in.readLong();
+			if(offset < 4 || offset + RECORD_HEADER_SIZE > end) {
+				throw new IllegalArgumentException(String.format("Invalid offset %d", offset));
+			}
+			entries.put(new Hash(h), offset);
+		}
+	}
+	
+	private static List<Hash> hashChunks(RECPFile file) {
+		List<Hash> hashes = new ArrayList<>(file.chunks.size());
+		for(RECPFile.Chunk c : file.chunks) {
+			hashes.add(hash(c));
+		}
+		return hashes;
+	}
+	
+	private static Hash hashManifest(List<Hash> manifest) {
+		MessageDigest digest = digests.get();
+		for(Hash h : manifest) {
+			digest.update(h.bytes);
+		}
+		return new Hash(digest.digest());
+	}
+	
+	/**
+	 * A chunk read from the store, dropped from {@link #loaded} once nothing else holds it
+	 */
+	private static final class LoadedChunk extends WeakReference<RECPFile.Chunk> {
+		final Hash hash;
+		
+		LoadedChunk(Hash hash, RECPFile.Chunk chunk, ReferenceQueue<RECPFile.Chunk> queue) {
+			super(chunk, queue);
+			this.hash = hash;
+		}
+	}
+	
+	/**
+	 * A SHA-256 hash identifying a chunk or recipe
+	 */
+	public static final class Hash implements Comparable<Hash> {
+		public static final int SIZE = 32;
+		
+		private final byte[] bytes;
+		private final int hashCode;
+		
+		private Hash(byte[] bytes) {
+			this.bytes = bytes;
+			// SHA-256 output is already uniformly distributed
+			this.hashCode = ByteBuffer.wrap(bytes).getInt();
+		}
+		
+		/**
+		 * Parse a hash from 64 hex digits, as printed by {@link #toString()}
+		 *
+		 * @throws IllegalArgumentException if the string isn't a hash
+		 */
+		public static Hash parse(String hex) {
+			if(hex.length() != SIZE * 2) {
+				throw new IllegalArgumentException(String.format("Invalid hash \"%s\"", hex));
+			}
+			byte[] bytes = new byte[SIZE];
+			for(int i = 0; i < SIZE; i++) {
+				int hi = Character.digit(hex.charAt(i * 2), 16);
+				int lo = Character.digit(hex.charAt(i * 2 + 1), 16);
+				if(hi < 0 || lo < 0) {
+					throw new IllegalArgumentException(String.format("Invalid hash \"%s\"", hex));
+				}
+				bytes[i] = (byte) (hi << 4 | lo);
+			}
+			return new Hash(bytes);
+		}
+		
+		public byte[] getBytes() {
+			return bytes.clone();
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Hash h && hashCode == h.hashCode && Arrays.equals(bytes, h.bytes);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+		
+		@Override
+		public int compareTo(Hash o) {
+			return Arrays.compareUnsigned(bytes, o.bytes);
+		}
+		
+		@Override
+		public String toString() {
+			StringBuilder s = new StringBuilder(SIZE * 2);
+			for(byte b : bytes) {
+				s.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return s.toString();
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package io.github.ashy1227.recp;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Listener that adds everything up in counters, for exposing as metrics or printing after a run
+ * <pre>{@code
+ * CountingListener counts = new CountingListener();
+ * RECPListener.set(counts);
+ * // ...
+ * System.out.println(counts);
+ * }</pre>
+ */
+public class CountingListener extends RECPListener {
+	private final LongAdder[] counts = adders();
+	private final LongAdder[] nanos = adders();
+	private final LongAdder[] bytes = adders();
+	private final LongAdder[] allocated = adders();
+	
+	private final Map<Integer, ChunkCounts> read = new ConcurrentHashMap<>();
+	private final Map<Integer, ChunkCounts> written = new ConcurrentHashMap<>();
+	
+	private final LongAdder strings = new LongAdder();
+	private final LongAdder stringBytes = new LongAdder();
+	
+	@Override
+	public void phase(Phase phase, long nanos, long bytes, long allocated) {
+		int i = phase.ordinal();
+		this.counts[i].increment();
+		this.nanos[i].add(nanos);
+		this.bytes[i].add(bytes);
+		this.allocated[i].add(allocated);
+	}
+	
+	@Override
+	public void chunkRead(int type, int size) {
+		read.computeIfAbsent(type, t -> new ChunkCounts()).add(size);
+	}
+	
+	@Override
+	public void chunkWritten(int type, int size) {
+		written.computeIfAbsent(type, t -> new ChunkCounts()).add(size);
+	}
+	
+	@Override
+	public void stringsDecoded(int count, long bytes) {
+		strings.add(count);
+		stringBytes.add(bytes);
+	}
+	
+	/**
+	 * Number of times a phase finished
+	 */
+	public long getCount(Phase phase) {
+		return counts[phase.ordinal()].sum();
+	}
+	
+	/**
+	 * Total time spent in a phase
+	 */
+	public long getNanos(Phase phase) {
+		return nanos[phase.ordinal()].sum();
+	}
+	
+	/**
+	 * Total bytes processed by a phase
+	 */
+	public long getBytes(Phase phase) {
+		return bytes[phase.ordinal()].sum();
+	}
+	
+	/**
+	 * Estimate of the heap allocated by a phase
+	 */
+	public long getAllocated(Phase phase) {
+		return allocated[phase.ordinal()].sum();
+	}
+	
+	public long getChunksRead(int type) {
+		ChunkCounts c = read.get(type);
+		return c == null ? 0 : c.count.sum();
+	}
+	
+	public long getBytesRead(int type) {
+		ChunkCounts c = read.get(type);
+		return c == null ? 0 : c.bytes.sum();
+	}
+	
+	public long getChunksWritten(int type) {
+		ChunkCounts c = written.get(type);
+		return c == null ? 0 : c.count.sum();
+	}
+	
+	public long getBytesWritten(int type) {
+		ChunkCounts c = written.get(type);
+		return c == null ? 0 : c.bytes.sum();
+	}
+	
+	public long getStringsDecoded() {
+		return strings.sum();
+	}
+	
+	public long getStringBytesDecoded() {
+		return stringBytes.sum();
+	}
+	
+	/**
+	 * Set every counter back to 0
+	 */
+	public void reset() {
+		for(int i = 0; i < counts.length; i++) {
+			counts[i].reset();
+			nanos[i].reset();
+			bytes[i].reset();
+			allocated[i].reset();
+		}
+		read.clear();
+		written.clear();
+		strings.reset();
+		stringBytes.reset();
+	}
+	
+	/**
+	 * Summary of every counter, one line per phase and chunk type
+	 */
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder();
+		for(Phase phase : Phase.values()) {
+			s.append(String.format("%-6s count=%d time=%.3fms bytes=%d allocated~%d%n", phase, getCount(phase), getNanos(phase) / 1e6, getBytes(phase), getAllocated(phase)));
+		}
+		appendChunks(s, "read", read);
+		appendChunks(s, "written", written);
+		s.append(String.format("strings decoded=%d bytes=%d", getStringsDecoded(), getStringBytesDecoded()));
+		return s.toString();
+	}
+	
+	private static void appendChunks(StringBuilder s, String label, Map<Integer, ChunkCounts> chunks) {
+		for(Map.Entry<Integer, ChunkCounts> e : new TreeMap<>(chunks).entrySet()) {
+			s.append(String.format("%s %s chunks=%d bytes=%d%n", RECPFile.ChunkType.toString(e.getKey()), label, e.getValue().count.sum(), e.getValue().bytes.sum()));
+		}
+	}
+	
+	private static LongAdder[] adders() {
+		LongAdder[] adders = new LongAdder[Phase.values().length];
+		for(int i = 0; i < adders.length; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+	
+	private static final class ChunkCounts {
+		final LongAdder count = new LongAdder();
+		final LongAdder bytes = new LongAdder();
+		
+		void add(int size) {
+			count.increment();
+			bytes.add(size);
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package io.github.ashy1227.recp;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fast 64-bit non-cryptographic hash of bytes, read 8 at a time, for telling whether content has changed
+ */
+final class Fingerprint {
+	private static final long P1 = 0x9E3779B185EBCA87L;
+	private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long P3 = 0x165667B19E3779F9L;
+	
+	private Fingerprint() {}
+	
+	/**
+	 * Hash the remaining bytes of a buffer, without moving its position
+	 */
+	static long of(ByteBuffer b, long seed) {
+		int p = b.position();
+		int end = b.limit();
+		long h = seed + P3 + (end - p) * P1;
+		for(; p + 8 <= end; p += 8) {
+			h = mix(h, b.getLong(p));
+		}
+		long tail = 0;
+		for(int shift = 0; p < end; p++, shift += 8) {
+			tail |= (b.get(p) & 0xffL) << shift;
+		}
+		return finish(mix(h, tail));
+	}
+	
+	static long mix(long h, long v) {
+		v *= P2;
+		v = Long.rotateLeft(v, 31);
+		v *= P1;
+		h ^= v;
+		return Long.rotateLeft(h, 27) * P1 + P3;
+	}
+	
+	static long finish(long h) {
+		h ^= h >>> 33;
+		h *= P2;
+		h ^= h >>> 29;
+		h *= P3;
+		h ^= h >>> 32;
+		return h;
+	}
+}
@@ -2,14 +2,60 @@ package io.github.ashy1227.recp;
 
 /**
  * 32-bit fraction type for storing ingredient amounts
+ * <p>
+ * Fractions are immutable and always stored in lowest terms with a positive denominator, so equal amounts have equal
+ * numerators and denominators. Arithmetic is checked: a result that doesn't fit in 16 bits throws
+ * {@link ArithmeticException} instead of wrapping around. Use {@link #widen()} for intermediate results that need more
+ * range.
  */
-public class Fraction {
-	public short numerator;
-	public short denominator;
+public final class Fraction implements Comparable<Fraction> {
+	public static final Fraction ZERO;
+	public static final Fraction ONE;
 	
+	/**
+	 * Largest numerator and denominator of the cached fractions returned by {@link #of(long, long)}
+	 */
+	private static final int CACHE_MAX_NUMERATOR = 64;
+	private static final int CACHE_MAX_DENOMINATOR = 16;
+	private static final Fraction[] cache = new Fraction[(CACHE_MAX_NUMERATOR + 1) * CACHE_MAX_DENOMINATOR];
+	
+	static {
+		for(int n = 0; n <= CACHE_MAX_NUMERATOR; n++) {
+			for(int d = 1; d <= CACHE_MAX_DENOMINATOR; d++) {
+				if(gcd(n, d) == 1) {
+					cache[n * CACHE_MAX_DENOMINATOR + d - 1] = new Fraction((short) n, (short) d, true);
+				}
+			}
+		}
+		ZERO = cache[0];
+		ONE = cache[CACHE_MAX_DENOMINATOR];
+	}
+	
+	public final short numerator;
+	public final short denominator;
+	
+	/**
+	 * @throws ArithmeticException if the denominator is zero, or the reduced fraction doesn't fit in 16 bits
+	 */
 	public Fraction(short numerator, short denominator) {
-		this.numerator = numerator;
-		this.denominator = denominator;
+		long n = numerator;
+		long d = denominator;
+		if(d == 0) {
+			throw new ArithmeticException("Zero denominator");
+		}
+		if(d < 0) {
+			n = -n;
+			d = -d;
+		}
+		long g = gcd(n, d);
+		n /= g;
+		d /= g;
+		
+		if(n != (short) n || d != (short) d) {
+			throw new ArithmeticException(String.format("%d/%d overflows a 16-bit fraction", n, d));
+		}
+		this.numerator = (short) n;
+		this.denominator = (short) d;
 	}
 	
 	public Fraction(short numerator) {
@@ -20,22 +66,89 @@ public class Fraction {
 		this((short) 0);
 	}
 	
-	public void multiply(Fraction f) {
-		this.numerator *= f.numerator;
-		this.denominator *= f.denominator;
+	/**
+	 * Construct an already-reduced fraction
+	 */
+	private Fraction(short numerator, short denominator, boolean reduced) {
+		this.numerator = numerator;
+		this.denominator = denominator;
+	}
+	
+	/**
+	 * Get a fraction in lowest terms. Common kitchen fractions are cached, so this doesn't allocate for them.
+	 *
+	 * @throws ArithmeticException if the denominator is zero, or the reduced fraction doesn't fit in 16 bits
+	 */
+	public static Fraction of(long numerator, long denominator) {
+		if(denominator == 0) {
+			throw new ArithmeticException("Zero denominator");
+		}
+		if(denominator < 0) {
+			numerator = Math.negateExact(numerator);
+			denominator = Math.negateExact(denominator);
+		}
+		long g = gcd(numerator, denominator);
+		numerator /= g;
+		denominator /= g;
+		
+		if(numerator >= 0 && numerator <= CACHE_MAX_NUMERATOR && denominator <= CACHE_MAX_DENOMINATOR) {
+			return cache[(int) numerator * CACHE_MAX_DENOMINATOR + (int) denominator - 1];
+		}
+		if(numerator != (short) numerator || denominator != (short) denominator) {
+			throw new ArithmeticException(String.format("%d/%d overflows a 16-bit fraction", numerator, denominator));
+		}
+		return new Fraction((short) numerator, (short) denominator, true);
 	}
 	
-	public void multiply(short n) {
-		this.numerator *= n;
+	/**
+	 * Get a whole number as a fraction
+	 *
+	 * @throws ArithmeticException if n doesn't fit in 16 bits
+	 */
+	public static Fraction of(long n) {
+		return of(n, 1);
 	}
 	
-	public void divide(Fraction f) {
-		this.numerator *= f.denominator;
-		this.denominator *= f.numerator;
+	/**
+	 * @throws ArithmeticException if the result overflows
+	 */
+	public Fraction multiply(Fraction f) {
+		return of((long) this.numerator * f.numerator, (long) this.denominator * f.denominator);
 	}
 	
-	public void divide(short n) {
-		this.denominator *= n;
+	/**
+	 * @throws ArithmeticException if the result overflows
+	 */
+	public Fraction multiply(short n) {
+		return of((long) this.numerator * n, this.denominator);
+	}
+	
+	/**
+	 * @throws ArithmeticException if f is zero, or the result overflows
+	 */
+	public Fraction divide(Fraction f) {
+		return of((long) this.numerator * f.denominator, (long) this.denominator * f.numerator);
+	}
+	
+	/**
+	 * @throws ArithmeticException if n is zero, or the result overflows
+	 */
+	public Fraction divide(short n) {
+		return of(this.numerator, (long) this.denominator * n);
+	}
+	
+	/**
+	 * @throws ArithmeticException if the result overflows
+	 */
+	public Fraction add(Fraction f) {
+		return of((long) this.numerator * f.denominator + (long) f.numerator * this.denominator, (long) this.denominator * f.denominator);
+	}
+	
+	/**
+	 * @throws ArithmeticException if the result overflows
+	 */
+	public Fraction subtract(Fraction f) {
+		return of((long) this.numerator * f.denominator - (long) f.numerator * this.denominator, (long) this.denominator * f.denominator);
 	}
 	
 	/**
@@ -49,13 +162,25 @@ public class Fraction {
 	 * Fractional part of a mixed number
 	 */
 	public Fraction getFractionalPart() {
-		return new Fraction((short) (numerator % denominator), denominator);
+		return of(numerator % denominator, denominator);
 	}
 	
 	public double asDouble() {
 		return (double) this.numerator / (double) this.denominator;
 	}
 	
+	/**
+	 * Promote to a 64-bit fraction, for arithmetic whose intermediate results don't fit in 16 bits
+	 */
+	public WideFraction widen() {
+		return WideFraction.of(numerator, denominator);
+	}
+	
+	@Override
+	public int compareTo(Fraction f) {
+		return Long.compare((long) this.numerator * f.denominator, (long) f.numerator * this.denominator);
+	}
+	
 	@Override
 	public String toString() {
 		return this.numerator + "/" + this.denominator;
@@ -70,22 +195,36 @@ public class Fraction {
 	
 	@Override
 	public int hashCode() {
-		return ((int) numerator << 16) | ((int) denominator);
+		return ((int) numerator << 16) | ((int) denominator & 0xffff);
 	}
 	
 	public static Fraction multiply(Fraction a, Fraction b) {
-		return new Fraction((short) (a.numerator * b.numerator), (short) (a.denominator * b.denominator));
+		return a.multiply(b);
 	}
 	
 	public static Fraction multiply(Fraction f, short n) {
-		return new Fraction((short) (f.numerator * n), f.denominator);
+		return f.multiply(n);
 	}
 	
 	public static Fraction divide(Fraction a, Fraction b) {
-		return new Fraction((short) (a.numerator * b.denominator), (short) (a.denominator * b.numerator));
+		return a.divide(b);
 	}
 	
 	public static Fraction divide(Fraction f, short n) {
-		return new Fraction(f.numerator, (short) (f.denominator * n));
+		return f.divide(n);
+	}
+	
+	/**
+	 * Greatest common divisor, always positive (or 1 if both are zero)
+	 */
+	static long gcd(long a, long b) {
+		a = Math.abs(a);
+		b = Math.abs(b);
+		while(b != 0) {
+			long t = a % b;
+			a = b;
+			b = t;
+		}
+		return a == 0 ? 1 : a;
 	}
 }
@@ -0,0 +1,388 @@
+package io.github.ashy1227.recp;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A recipe that can't be modified, and so can be shared between threads and cached without copying
+ * <p>
+ * Ingredients are stored column by column in primitive arrays (units, numerators, denominators and names) instead of
+ * as one {@link Ingredient} and {@link Fraction} per line. Ingredient and Fraction objects are only created when asked
+ * for, so a cached recipe costs a handful of arrays however many ingredients it has.
+ */
+public final class ImmutableRecipe {
+	private final byte[] units;
+	private final short[] numerators;
+	private final short[] denominators;
+	private final String[] names;
+	private final String[] procedure;
+	
+	@Nullable private final String title;
+	@Nullable private final String description;
+	@Nullable private final String longDescription;
+	@Nullable private final String[] tags;
+	
+	/**
+	 * Cached {@link #hashCode()}, 0 until computed
+	 */
+	private int hash;
+	
+	/**
+	 * Takes ownership of the arrays, which must not be modified afterwards
+	 */
+	private ImmutableRecipe(byte[] units, short[] numerators, short[] denominators, String[] names, String[] procedure, @Nullable String title, @Nullable String description, @Nullable String longDescription, @Nullable String[] tags) {
+		this.units = units;
+		this.numerators = numerators;
+		this.denominators = denominators;
+		this.names = names;
+		this.procedure = procedure;
+		this.title = title;
+		this.description = description;
+		this.longDescription = longDescription;
+		this.tags = tags;
+	}
+	
+	/**
+	 * Copy a Recipe
+	 */
+	public static ImmutableRecipe of(@NotNull Recipe recipe) {
+		Builder builder = new Builder(recipe.ingredients.size())
+			.title(recipe.title)
+			.description(recipe.description)
+			.longDescription(recipe.longDescription);
+		for(Ingredient ingredient : recipe.ingredients) {
+			builder.ingredient(ingredient.unit, ingredient.amount, ingredient.ingredient);
+		}
+		for(String step : recipe.procedure) {
+			builder.step(step);
+		}
+		if(recipe.tags != null) {
+			builder.tags(recipe.tags);
+		}
+		return builder.build();
+	}
+	
+	/**
+	 * Decode a RECPFile straight into the packed layout, without creating an Ingredient per line
+	 *
+	 * @param pool pool for ingredient names and tags, or null to decode every string
+	 */
+	public static ImmutableRecipe decode(@NotNull RECPFile file, @Nullable StringPool pool) {
+		Decoder d = new Decoder(pool);
+		d.decode(file, Recipe.Part.ALL);
+		return new ImmutableRecipe(d.units, d.numerators, d.denominators, d.names, d.procedure, d.title, d.description, d.longDescription, d.tags);
+	}
+	
+	/**
+	 * Decode a RECPFile straight into the packed layout
+	 */
+	public static ImmutableRecipe decode(@NotNull RECPFile file) {
+		return decode(file, null);
+	}
+	
+	public static Builder builder() {
+		return new Builder(8);
+	}
+	
+	/**
+	 * Get a mutable copy, e.g. to edit or encode
+	 */
+	public Recipe toRecipe() {
+		return new Recipe(
+			new ArrayList<>(getIngredients()),
+			new ArrayList<>(getProcedure()),
+			title,
+			description,
+			longDescription,
+			tags == null ? null : new ArrayList<>(Arrays.asList(tags))
+		);
+	}
+	
+	/**
+	 * Get a copy with every ingredient amount multiplied by a factor
+	 *
+	 * @throws ArithmeticException if a scaled amount doesn't fit in a Fraction
+	 */
+	public ImmutableRecipe scaled(Fraction factor) {
+		short[] n = new short[units.length];
+		short[] d = new short[units.length];
+		for(int i = 0; i < units.length; i++) {
+			Fraction amount = getAmount(i).multiply(factor);
+			n[i] = amount.numerator;
+			d[i] = amount.denominator;
+		}
+		return new ImmutableRecipe(units, n, d, names, procedure, title, description, longDescription, tags);
+	}
+	
+	public int ingredientCount() {
+		return units.length;
+	}
+	
+	public Unit getUnit(int i) {
+		return Unit.get(units[i]);
+	}
+	
+	public Fraction getAmount(int i) {
+		return Fraction.of(numerators[i], denominators[i]);
+	}
+	
+	public String getIngredientName(int i) {
+		return names[i];
+	}
+	
+	public Ingredient getIngredient(int i) {
+		return new Ingredient(getUnit(i), getAmount(i), names[i]);
+	}
+	
+	/**
+	 * Unmodifiable view of the ingredients. Each access creates a new Ingredient, so modifying one has no effect on
+	 * this recipe.
+	 */
+	public List<Ingredient> getIngredients() {
+		return new AbstractList<>() {
+			@Override
+			public Ingredient get(int i) {
+				return getIngredient(i);
+			}
+			
+			@Override
+			public int size() {
+				return units.length;
+			}
+		};
+	}
+	
+	public List<String> getProcedure() {
+		return Collections.unmodifiableList(Arrays.asList(procedure));
+	}
+	
+	@Nullable
+	public String getTitle() {
+		return title;
+	}
+	
+	@Nullable
+	public String getDescription() {
+		return description;
+	}
+	
+	@Nullable
+	public String getLongDescription() {
+		return longDescription;
+	}
+	
+	@Nullable
+	public List<String> getTags() {
+		return tags == null ? null : Collections.unmodifiableList(Arrays.asList(tags));
+	}
+	
+	/**
+	 * Recipes are equal if every ingredient, step, tag and text field is equal, in the same order. The hash is cached,
+	 * so recipes with different hashes are told apart without comparing any strings.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj) {
+			return true;
+		}
+		if(!(obj instanceof ImmutableRecipe r) || hashCode() != r.hashCode()) {
+			return false;
+		}
+		return Arrays.equals(units, r.units)
+			   && Arrays.equals(numerators, r.numerators)
+			   && Arrays.equals(denominators, r.denominators)
+			   && Arrays.equals(names, r.names)
+			   && Arrays.equals(procedure, r.procedure)
+			   && Objects.equals(title, r.title)
+			   && Objects.equals(description, r.description)
+			   && Objects.equals(longDescription, r.longDescription)
+			   && Arrays.equals(tags, r.tags);
+	}
+	
+	@Override
+	public int hashCode() {
+		int h = hash;
+		if(h == 0) {
+			h = Arrays.hashCode(units);
+			h = 31 * h + Arrays.hashCode(numerators);
+			h = 31 * h + Arrays.hashCode(denominators);
+			h = 31 * h + Arrays.hashCode(names);
+			h = 31 * h + Arrays.hashCode(procedure);
+			h = 31 * h + Objects.hash(title, description, longDescription);
+			h = 31 * h + Arrays.hashCode(tags);
+			hash = h;
+		}
+		return h;
+	}
+	
+	/**
+	 * Decodes straight into the packed arrays
+	 */
+	private static final class Decoder extends RecipeDecoder {
+		byte[] units = new byte[0];
+		short[] numerators = new short[0];
+		short[] denominators = new short[0];
+		String[] names = new String[0];
+		String[] procedure = new String[0];
+		String title, description, longDescription;
+		String[] tags;
+		
+		Decoder(@Nullable StringPool pool) {
+			super(pool);
+		}
+		
+		@Override
+		void ingredients(int count) {
+			units = new byte[count];
+			numerators = new short[count];
+			denominators = new short[count];
+			names = new String[count];
+		}
+		
+		@Override
+		void ingredient(int i, byte unit, Fraction amount, String name) {
+			units[i] = unit;
+			numerators[i] = amount.numerator;
+			denominators[i] = amount.denominator;
+			names[i] = name;
+		}
+		
+		@Override
+		void procedure(int count) {
+			procedure = new String[count];
+		}
+		
+		@Override
+		void step(int i, String step) {
+			procedure[i] = step;
+		}
+		
+		@Override
+		void tags(int count) {
+			tags = new String[count];
+		}
+		
+		@Override
+		void tag(int i, String tag) {
+			tags[i] = tag;
+		}
+		
+		@Override
+		void text(Recipe.Part part, String text) {
+			switch(part) {
+				case TITLE -> title = text;
+				case DESCRIPTION -> description = text;
+				case LONG_DESCRIPTION -> longDescription = text;
+				default -> throw new IllegalStateException(part.toString());
+			}
+		}
+		
+		@Override
+		long estimateAllocated(int strings, long bytes) {
+			// No Ingredient per line, just the packed arrays
+			return Recipe.estimateAllocated(strings, 0, bytes) + 5L * units.length;
+		}
+	}
+	
+	/**
+	 * Builds an ImmutableRecipe. Ingredients are packed as they are added.
+	 */
+	public static final class Builder {
+		private byte[] units;
+		private short[] numerators;
+		private short[] denominators;
+		private String[] names;
+		private int ingredients;
+		
+		private final List<String> procedure = new ArrayList<>();
+		@Nullable private List<String> tags;
+		
+		@Nullable private String title;
+		@Nullable private String description;
+		@Nullable private String longDescription;
+		
+		private Builder(int capacity) {
+			capacity = Math.max(capacity, 1);
+			units = new byte[capacity];
+			numerators = new short[capacity];
+			denominators = new short[capacity];
+			names = new String[capacity];
+		}
+		
+		public Builder ingredient(@NotNull Unit unit, @NotNull Fraction amount, @NotNull String name) {
+			if(ingredients == units.length) {
+				int capacity = ingredients * 2;
+				units = Arrays.copyOf(units, capacity);
+				numerators = Arrays.copyOf(numerators, capacity);
+				denominators = Arrays.copyOf(denominators, capacity);
+				names = Arrays.copyOf(names, capacity);
+			}
+			units[ingredients] = unit.id;
+			numerators[ingredients] = amount.numerator;
+			denominators[ingredients] = amount.denominator;
+			names[ingredients] = name;
+			ingredients++;
+			return this;
+		}
+		
+		public Builder step(@NotNull String step) {
+			procedure.add(step);
+			return this;
+		}
+		
+		public Builder tag(@NotNull String tag) {
+			if(tags == null) {
+				tags = new ArrayList<>();
+			}
+			tags.add(tag);
+			return this;
+		}
+		
+		public Builder tags(@NotNull List<String> tags) {
+			if(this.tags == null) {
+				this.tags = new ArrayList<>(tags.size());
+			}
+			this.tags.addAll(tags);
+			return this;
+		}
+		
+		public Builder title(@Nullable String title) {
+			this.title = title;
+			return this;
+		}
+		
+		public Builder description(@Nullable String description) {
+			this.description = description;
+			return this;
+		}
+		
+		public Builder longDescription(@Nullable String longDescription) {
+			this.longDescription = longDescription;
+			return this;
+		}
+		
+		/**
+		 * Build the recipe. The builder can keep being used afterwards without affecting it.
+		 */
+		public ImmutableRecipe build() {
+			return new ImmutableRecipe(
+				Arrays.copyOf(units, ingredients),
+				Arrays.copyOf(numerators, ingredients),
+				Arrays.copyOf(denominators, ingredients),
+				Arrays.copyOf(names, ingredients),
+				procedure.toArray(new String[0]),
+				title,
+				description,
+				longDescription,
+				tags == null ? null : tags.toArray(new String[0])
+			);
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package io.github.ashy1227.recp;
 
+import java.util.Objects;
+
 public class Ingredient {
 	public Unit unit;
 	public Fraction amount;
@@ -11,6 +13,81 @@ public class Ingredient {
 		this.ingredient = ingredient;
 	}
 	
+	/**
+	 * Get a copy of this ingredient with its amount multiplied by a factor. This ingredient isn't modified.
+	 *
+	 * @param normalizeUnits whether to move the result into larger units where the amount allows it, see
+	 *                       {@link #normalized()}
+	 * @throws ArithmeticException if the resulting amount doesn't fit in a Fraction
+	 */
+	public Ingredient scaled(Fraction factor, boolean normalizeUnits) {
+		// Scale in 64 bits so that amounts which only fit after normalizing don't overflow
+		WideFraction a = this.amount.widen().multiply(factor);
+		Unit u = this.unit;
+		
+		if(normalizeUnits) {
+			while(u.getLarger() != null && a.compareTo(WideFraction.of(u.getLargerFactor())) >= 0) {
+				a = a.divide(WideFraction.of(u.getLargerFactor()));
+				u = u.getLarger();
+			}
+		}
+		
+		return new Ingredient(u, a.narrow(), this.ingredient);
+	}
+	
+	/**
+	 * Get a copy of this ingredient with its amount multiplied by a factor. This ingredient isn't modified.
+	 *
+	 * @throws ArithmeticException if the resulting amount doesn't fit in a Fraction
+	 */
+	public Ingredient scaled(Fraction factor) {
+		return scaled(factor, false);
+	}
+	
+	/**
+	 * Get a copy of this ingredient in the largest unit that keeps the amount at least 1, e.g. 48 teaspoons becomes 1
+	 * cup. Units are only moved up their own family, see {@link Unit#getLarger()}.
+	 */
+	public Ingredient normalized() {
+		return scaled(Fraction.ONE, true);
+	}
+	
+	/**
+	 * Get a copy of this ingredient with its amount converted exactly to another unit
+	 *
+	 * @throws IllegalArgumentException if the units have different dimensions
+	 * @throws ArithmeticException if the converted amount doesn't fit in a Fraction
+	 */
+	public Ingredient convertedTo(Unit unit) {
+		return new Ingredient(unit, UnitConversion.convert(this.amount, this.unit, unit), this.ingredient);
+	}
+	
+	/**
+	 * Amount of this ingredient in another unit
+	 *
+	 * @throws IllegalArgumentException if the units have different dimensions
+	 */
+	public double amountIn(Unit unit) {
+		return UnitConversion.convert(this.amount.asDouble(), this.unit, unit);
+	}
+	
+	/**
+	 * Ingredients are equal if they have the same unit, amount and name. Amounts are always reduced, so 2/4 cup equals
+	 * 1/2 cup, but 8 tablespoons doesn't.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		return obj != null && this.getClass() == obj.getClass()
+			   && ((Ingredient) obj).unit == this.unit
+			   && Objects.equals(((Ingredient) obj).amount, this.amount)
+			   && Objects.equals(((Ingredient) obj).ingredient, this.ingredient);
+	}
+	
+	@Override
+	public int hashCode() {
+		return Objects.hash(unit, amount, ingredient);
+	}
+	
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
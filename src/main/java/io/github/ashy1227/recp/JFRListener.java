@@ -0,0 +1,115 @@
+package io.github.ashy1227.recp;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Listener that emits Java Flight Recorder events, to see RECP work alongside GC, I/O and the rest of a recording
+ * <p>
+ * Phase and string events are enabled by default. Chunk events are disabled by default since there are several per
+ * file; enable {@code io.github.ashy1227.recp.Chunk} in the recording settings to get them. Events cost almost nothing
+ * while no recording is running.
+ */
+public class JFRListener extends RECPListener {
+	@Override
+	public void phase(Phase phase, long nanos, long bytes, long allocated) {
+		PhaseEvent e = new PhaseEvent();
+		if(e.shouldCommit()) {
+			e.phase = phase.name();
+			e.time = nanos;
+			e.bytes = bytes;
+			e.allocated = allocated;
+			e.commit();
+		}
+	}
+	
+	@Override
+	public void chunkRead(int type, int size) {
+		chunk(type, size, false);
+	}
+	
+	@Override
+	public void chunkWritten(int type, int size) {
+		chunk(type, size, true);
+	}
+	
+	@Override
+	public void stringsDecoded(int count, long bytes) {
+		StringsEvent e = new StringsEvent();
+		if(e.shouldCommit()) {
+			e.count = count;
+			e.bytes = bytes;
+			e.commit();
+		}
+	}
+	
+	private static void chunk(int type, int size, boolean written) {
+		ChunkEvent e = new ChunkEvent();
+		if(e.shouldCommit()) {
+			e.type = RECPFile.ChunkType.toString(type);
+			e.size = size;
+			e.written = written;
+			e.commit();
+		}
+	}
+	
+	@Name("io.github.ashy1227.recp.Phase")
+	@Label("RECP Phase")
+	@Category("RECP")
+	@StackTrace(false)
+	static final class PhaseEvent extends Event {
+		@Label("Phase")
+		String phase;
+		
+		@Label("Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long time;
+		
+		@Label("Bytes")
+		@DataAmount
+		long bytes;
+		
+		@Label("Allocated")
+		@Description("Estimate of the heap allocated")
+		@DataAmount
+		long allocated;
+	}
+	
+	@Name("io.github.ashy1227.recp.Chunk")
+	@Label("RECP Chunk")
+	@Category("RECP")
+	@StackTrace(false)
+	@Enabled(false)
+	static final class ChunkEvent extends Event {
+		@Label("Type")
+		String type;
+		
+		@Label("Size")
+		@DataAmount
+		int size;
+		
+		@Label("Written")
+		@Description("Whether the chunk was encoded or written rather than read")
+		boolean written;
+	}
+	
+	@Name("io.github.ashy1227.recp.Strings")
+	@Label("RECP Strings Decoded")
+	@Category("RECP")
+	@StackTrace(false)
+	static final class StringsEvent extends Event {
+		@Label("Count")
+		int count;
+		
+		@Label("Bytes")
+		@DataAmount
+		long bytes;
+	}
+}
@@ -0,0 +1,379 @@
+package io.github.ashy1227.recp;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Many RECP files stored back to back in one file, followed by an index of where every recipe and every chunk is
+ * <p>
+ * The archive is memory-mapped, and the index has fixed-size entries, so any recipe, or any single chunk of a recipe,
+ * can be found without reading anything else. Recipes are identified by the order they were added, starting from 0.
+ * <pre>
+ * signature      int             "RCPA"
+ * recipes        RECP file[]     each a complete RECP file, signature to END
+ * index          int             number of recipes
+ *                int             number of chunks
+ *                recipe entry[]  long offset, int length, int first chunk, int chunk count
+ *                chunk entry[]   int type, int offset from the start of its recipe, int size
+ * trailer        long            offset of the index
+ *                int             "RCPA"
+ * </pre>
+ */
+public class RECPArchive implements Closeable {
+	/**
+	 * Archive signature
+	 */
+	public static final int SIGNATURE = 0x52435041;
+	
+	protected static final int RECIPE_ENTRY_SIZE = 20;
+	protected static final int CHUNK_ENTRY_SIZE = 12;
+	protected static final int TRAILER_SIZE = 12;
+	
+	protected final FileChannel channel;
+	/**
+	 * The whole archive, or null if it's too big to map at once and recipes are mapped one at a time
+	 */
+	@Nullable protected final MappedByteBuffer mapped;
+	protected final ByteBuffer index;
+	protected final long indexOffset;
+	protected final int recipeCount;
+	protected final int chunkCount;
+	
+	protected RECPArchive(FileChannel channel) throws IOException {
+		this.channel = channel;
+		long size = channel.size();
+		if(size < 4 + 8 + TRAILER_SIZE) {
+			throw new IllegalArgumentException("File is too small to be a RECP archive");
+		}
+		
+		ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+		ChunkLocation.readFully(channel, trailer, size - TRAILER_SIZE);
+		indexOffset = trailer.flip().getLong();
+		if(trailer.getInt() != SIGNATURE) {
+			throw new IllegalArgumentException("Invalid archive trailer");
+		}
+		if(indexOffset < 4 || indexOffset + 8 > size - TRAILER_SIZE) {
+			throw new IllegalArgumentException(String.format("Invalid index offset %d", indexOffset));
+		}
+		if(size - TRAILER_SIZE - indexOffset > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(String.format("Index of %d bytes is too large to map", size - TRAILER_SIZE - indexOffset));
+		}
+		
+		if(size <= Integer.MAX_VALUE) {
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			if(mapped.getInt(0) != SIGNATURE) {
+				throw new IllegalArgumentException("Invalid archive signature");
+			}
+			index = mapped.slice((int) indexOffset, (int) (size - TRAILER_SIZE - indexOffset));
+		} else {
+			mapped = null;
+			index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, size - TRAILER_SIZE - indexOffset);
+		}
+		
+		recipeCount = index.getInt(0);
+		chunkCount = index.getInt(4);
+		if(recipeCount < 0 || chunkCount < 0 || indexSize(recipeCount, chunkCount) != index.capacity()) {
+			throw new IllegalArgumentException("Invalid archive index");
+		}
+	}
+	
+	/**
+	 * Open an archive for reading
+	 *
+	 * @throws IllegalArgumentException if the file isn't a valid archive
+	 * @throws IOException if error occurs opening or mapping the file
+	 */
+	public static RECPArchive open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			return new RECPArchive(channel);
+		} catch(IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Number of recipes in the archive
+	 */
+	public int size() {
+		return recipeCount;
+	}
+	
+	/**
+	 * The bytes of a complete RECP file
+	 *
+	 * @throws IndexOutOfBoundsException if there's no recipe n
+	 * @throws IOException if error occurs mapping the recipe
+	 */
+	public ByteBuffer getBytes(int n) throws IOException {
+		int entry = recipeEntry(n);
+		long offset = index.getLong(entry);
+		int length = index.getInt(entry + 8);
+		if(offset < 4 || length < 0 || offset + length > indexOffset) {
+			throw new IllegalArgumentException(String.format("Invalid index entry for recipe %d", n));
+		}
+		
+		if(mapped != null) {
+			return mapped.slice((int) offset, length).asReadOnlyBuffer();
+		}
+		return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+	}
+	
+	/**
+	 * A recipe's chunks, as views into the archive. Chunk boundaries come from the index, so the recipe isn't walked.
+	 *
+	 * @throws IndexOutOfBoundsException if there's no recipe n
+	 * @throws IOException if error occurs mapping the recipe
+	 */
+	public RECPFile getFile(int n) throws IOException {
+		ByteBuffer bytes = getBytes(n);
+		int entry = recipeEntry(n);
+		int first = index.getInt(entry + 12);
+		int count = index.getInt(entry + 16);
+		
+		List<RECPFile.Chunk> chunks = new ArrayList<>(count);
+		for(int i = 0; i < count; i++) {
+			chunks.add(chunk(bytes, first + i));
+		}
+		return new RECPFile(chunks);
+	}
+	
+	/**
+	 * A single chunk of a recipe, as a view into the archive
+	 *
+	 * @param type chunk type, see {@link RECPFile.ChunkType}
+	 * @return the first chunk of that type, or null if the recipe doesn't have one
+	 * @throws IndexOutOfBoundsException if there's no recipe n
+	 * @throws IOException if error occurs mapping the recipe
+	 */
+	@Nullable
+	public RECPFile.Chunk getChunk(int n, int type) throws IOException {
+		int entry = recipeEntry(n);
+		int first = index.getInt(entry + 12);
+		int count = index.getInt(entry + 16);
+		
+		for(int i = first; i < first + count; i++) {
+			int t = index.getInt(chunkEntry(i));
+			if(t == type) {
+				return chunk(getBytes(n), i);
+			}
+			if(t == RECPFile.ChunkType.defl) {
+				RECPFile.Chunk c = chunk(getBytes(n), i);
+				if(c.getContentType() == type) {
+					return c.decompressed();
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Decode a recipe
+	 *
+	 * @throws IndexOutOfBoundsException if there's no recipe n
+	 * @throws IOException if error occurs mapping the recipe
+	 */
+	public Recipe getRecipe(int n) throws IOException {
+		return new Recipe(getFile(n));
+	}
+	
+	/**
+	 * Decode only some parts of a recipe
+	 *
+	 * @throws IndexOutOfBoundsException if there's no recipe n
+	 * @throws IOException if error occurs mapping the recipe
+	 * @see Recipe#decode(RECPFile, Set)
+	 */
+	public Recipe getRecipe(int n, Set<Recipe.Part> parts) throws IOException {
+		return Recipe.decode(getFile(n), parts);
+	}
+	
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+	private int recipeEntry(int n) {
+		if(n < 0 || n >= recipeCount) {
+			throw new IndexOutOfBoundsException(String.format("Recipe %d out of bounds for archive of %d", n, recipeCount));
+		}
+		// Fits in an int, since the whole index does
+		return (int) (8 + (long) n * RECIPE_ENTRY_SIZE);
+	}
+	
+	private int chunkEntry(int i) {
+		if(i < 0 || i >= chunkCount) {
+			throw new IllegalArgumentException(String.format("Invalid chunk index %d", i));
+		}
+		return (int) (8 + (long) recipeCount * RECIPE_ENTRY_SIZE + (long) i * CHUNK_ENTRY_SIZE);
+	}
+	
+	/**
+	 * Size of an index, not counting the trailer
+	 */
+	private static long indexSize(long recipes, long chunks) {
+		return 8 + recipes * RECIPE_ENTRY_SIZE + chunks * CHUNK_ENTRY_SIZE;
+	}
+	
+	private RECPFile.Chunk chunk(ByteBuffer recipe, int i) {
+		int entry = chunkEntry(i);
+		int type = index.getInt(entry);
+		int offset = index.getInt(entry + 4);
+		int size = index.getInt(entry + 8);
+		if(offset < 0 || size < 0 || (long) offset + size > recipe.remaining()) {
+			throw new IllegalArgumentException(String.format("Invalid index entry for chunk %d", i));
+		}
+		return new RECPFile.Chunk(type, recipe.slice(recipe.position() + offset, size));
+	}
+	
+	/**
+	 * Writes recipes into a new archive one after another, then the index when closed
+	 */
+	public static class Writer implements Closeable {
+		protected final FileChannel channel;
+		
+		private long[] offsets = new long[64];
+		private int[] lengths = new int[64];
+		private int[] firstChunks = new int[64];
+		private int recipes;
+		
+		/**
+		 * Chunk table entries, three ints per chunk
+		 */
+		private int[] chunkEntries = new int[64 * 3 * 8];
+		private int chunks;
+		
+		private final ByteBuffer header = ByteBuffer.allocate(8);
+		
+		public Writer(Path path) throws IOException {
+			this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+			ByteBuffer signature = ByteBuffer.allocate(4).putInt(SIGNATURE).flip();
+			while(signature.hasRemaining()) {
+				channel.write(signature);
+			}
+		}
+		
+		/**
+		 * Append a recipe
+		 *
+		 * @return the recipe's number in the archive
+		 * @throws IllegalStateException if the index would become too large to hold in one buffer. Nothing is written.
+		 * @throws IOException if error occurs writing the file
+		 */
+		public int add(RECPFile file) throws IOException {
+			long indexSize = indexSize(recipes + 1L, (long) chunks + file.chunks.size()) + TRAILER_SIZE;
+			if(indexSize > Integer.MAX_VALUE) {
+				throw new IllegalStateException(String.format("Archive index would grow to %d bytes, too large for one buffer", indexSize));
+			}
+			long start = channel.position();
+			int first = chunks;
+			header.clear().putInt(RECPFile.SIGNATURE).flip();
+			writeFully(header);
+			
+			int offset = 4;
+			for(RECPFile.Chunk c : file.chunks) {
+				int size = c.data.remaining();
+				addChunk(c.type, offset + 8, size);
+				
+				header.clear().putInt(size).putInt(c.type).flip();
+				writeFully(header);
+				writeFully(c.data.duplicate());
+				offset += 8 + size;
+			}
+			return addRecipe(start, offset, first);
+		}
+		
+		/**
+		 * Append an encoded RECP file, such as the output of {@link RECPEncoder#encode(Recipe)}
+		 *
+		 * @return the recipe's number in the archive
+		 * @throws IllegalArgumentException if the file is invalid
+		 * @throws IOException if error occurs writing the file
+		 */
+		public int add(ByteBuffer file) throws IOException {
+			return add(RECPFile.fromByteBuffer(file));
+		}
+		
+		/**
+		 * Encode and append a recipe
+		 *
+		 * @return the recipe's number in the archive
+		 * @throws IOException if error occurs writing the file
+		 */
+		public int add(Recipe recipe, Charset charSet) throws IOException {
+			return add(new RECPEncoder(charSet).encode(recipe));
+		}
+		
+		/**
+		 * Write the index and close the file
+		 */
+		@Override
+		public void close() throws IOException {
+			try {
+				long indexOffset = channel.position();
+				// add() keeps this within an int
+				ByteBuffer index = ByteBuffer.allocate(Math.toIntExact(indexSize(recipes, chunks) + TRAILER_SIZE));
+				index.putInt(recipes);
+				index.putInt(chunks);
+				
+				for(int i = 0; i < recipes; i++) {
+					int next = i + 1 < recipes ? firstChunks[i + 1] : chunks;
+					index.putLong(offsets[i]);
+					index.putInt(lengths[i]);
+					index.putInt(firstChunks[i]);
+					index.putInt(next - firstChunks[i]);
+				}
+				for(int i = 0; i < chunks * 3; i++) {
+					index.putInt(chunkEntries[i]);
+				}
+				
+				index.putLong(indexOffset);
+				index.putInt(SIGNATURE);
+				writeFully(index.flip());
+			} finally {
+				channel.close();
+			}
+		}
+		
+		private void addChunk(int type, int offset, int size) {
+			if((chunks + 1) * 3 > chunkEntries.length) {
+				chunkEntries = Arrays.copyOf(chunkEntries, chunkEntries.length * 2);
+			}
+			chunkEntries[chunks * 3] = type;
+			chunkEntries[chunks * 3 + 1] = offset;
+			chunkEntries[chunks * 3 + 2] = size;
+			chunks++;
+		}
+		
+		private int addRecipe(long offset, int length, int firstChunk) {
+			if(recipes == offsets.length) {
+				offsets = Arrays.copyOf(offsets, recipes * 2);
+				lengths = Arrays.copyOf(lengths, recipes * 2);
+				firstChunks = Arrays.copyOf(firstChunks, recipes * 2);
+			}
+			offsets[recipes] = offset;
+			lengths[recipes] = length;
+			firstChunks[recipes] = firstChunk;
+			return recipes++;
+		}
+		
+		private void writeFully(ByteBuffer b) throws IOException {
+			while(b.hasRemaining()) {
+				channel.write(b);
+			}
+		}
+	}
+}
@@ -0,0 +1,306 @@
+package io.github.ashy1227.recp;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Encodes Recipes into RECP-formatted bytes in a single pass. Strings are encoded straight into the output buffer and
+ * their length prefixes and chunk sizes are filled in afterwards, so nothing is measured or copied twice.
+ * <p>
+ * An encoder keeps one output buffer that is reused by every call to {@link #encode(Recipe)}. It is not thread-safe.
+ */
+public class RECPEncoder {
+	public static final int DEFAULT_BUFFER_SIZE = 4096;
+	
+	protected final Charset charSet;
+	protected final long textEncoding;
+	protected final CharsetEncoder encoder;
+	
+	protected ByteBuffer buffer;
+	
+	/**
+	 * @param charSet desired character encoding. Valid charsets are: StandardCharsets.UTF_8, StandardCharsets.UTF_16,
+	 *                StandardCharsets.ISO_8859_1, StandardCharsets.US_ASCII
+	 * @param bufferSize initial size of the buffer, which doubles whenever a recipe doesn't fit
+	 * @throws IllegalArgumentException if charSet isn't a valid RECP character encoding, or bufferSize isn't positive
+	 */
+	public RECPEncoder(Charset charSet, int bufferSize) {
+		if(bufferSize <= 0) {
+			throw new IllegalArgumentException(String.format("Invalid buffer size %d", bufferSize));
+		}
+		this.charSet = charSet;
+		this.textEncoding = RECPFile.TextEncoding.fromCharset(charSet);
+		// Same replacement behaviour as String.getBytes
+		this.encoder = charSet.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.buffer = ByteBuffer.allocate(bufferSize);
+	}
+	
+	public RECPEncoder(Charset charSet) {
+		this(charSet, DEFAULT_BUFFER_SIZE);
+	}
+	
+	/**
+	 * Construct an encoder with UTF-8 character encoding
+	 */
+	public RECPEncoder() {
+		this(StandardCharsets.UTF_8);
+	}
+	
+	public Charset getCharset() {
+		return charSet;
+	}
+	
+	/**
+	 * Encode a Recipe into this encoder's buffer, growing it if needed
+	 *
+	 * @return the encoded file, from position to limit. Only valid until the next call to encode
+	 */
+	public ByteBuffer encode(@NotNull Recipe recipe) {
+		RECPListener l = RECPListener.get();
+		long start = l == null ? 0 : System.nanoTime();
+		long allocated = 0;
+		while(true) {
+			buffer.clear();
+			try {
+				encodeFile(recipe, buffer);
+				buffer.flip();
+				if(l != null) {
+					encoded(l, buffer, start, allocated);
+				}
+				return buffer;
+			} catch(BufferOverflowException e) {
+				buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+				allocated += buffer.capacity();
+			}
+		}
+	}
+	
+	/**
+	 * Encode a Recipe into a buffer borrowed from a pool
+	 *
+	 * @return the encoded file, from position to limit. The caller must {@link BufferPool#release(ByteBuffer) release}
+	 * it when done with it
+	 */
+	public ByteBuffer encode(@NotNull Recipe recipe, BufferPool pool) {
+		RECPListener l = RECPListener.get();
+		long start = l == null ? 0 : System.nanoTime();
+		// This encoder's own buffer has already grown to fit past recipes, so start from its size
+		int size = buffer.capacity();
+		while(true) {
+			ByteBuffer b = pool.acquire(size);
+			try {
+				encodeFile(recipe, b.limit(b.capacity()));
+				b.flip();
+				if(l != null) {
+					encoded(l, b, start, 0);
+				}
+				return b;
+			} catch(BufferOverflowException e) {
+				pool.release(b);
+				size = b.capacity() * 2;
+			} catch(RuntimeException e) {
+				pool.release(b);
+				throw e;
+			}
+		}
+	}
+	
+	/**
+	 * Encode a Recipe into a caller-provided buffer, starting at its position
+	 *
+	 * @throws BufferOverflowException if dst is too small to hold the file. dst's position is then undefined
+	 */
+	public void encode(@NotNull Recipe recipe, ByteBuffer dst) {
+		RECPListener l = RECPListener.get();
+		long start = l == null ? 0 : System.nanoTime();
+		int p = dst.position();
+		encodeFile(recipe, dst);
+		if(l != null) {
+			encoded(l, dst.duplicate().flip().position(p), start, 0);
+		}
+	}
+	
+	/**
+	 * Report an encoded file to a listener. Its chunks are only reported once they are written, see
+	 * {@link #chunksWritten}.
+	 *
+	 * @param file the encoded file, from position to limit
+	 */
+	private static void encoded(RECPListener l, ByteBuffer file, long start, long allocated) {
+		l.phase(RECPListener.Phase.ENCODE, System.nanoTime() - start, file.remaining(), allocated);
+	}
+	
+	/**
+	 * Report the chunks of an encoded file that was written out in one piece
+	 *
+	 * @param file the encoded file, from position to limit
+	 */
+	static void chunksWritten(RECPListener l, ByteBuffer file) {
+		// Skip the signature and walk the chunk headers
+		int p = file.position() + 4;
+		while(p + 8 <= file.limit()) {
+			int size = file.getInt(p);
+			int type = file.getInt(p + 4);
+			l.chunkWritten(type, size);
+			if(type == RECPFile.ChunkType.END) {
+				break;
+			}
+			p += 8 + size;
+		}
+	}
+	
+	private void encodeFile(Recipe recipe, ByteBuffer dst) {
+		int p;
+		
+		dst.putInt(RECPFile.SIGNATURE);
+		
+		// META
+		p = beginChunk(dst, RECPFile.ChunkType.META);
+		dst.putLong(textEncoding);
+		endChunk(dst, p);
+		
+		// INGR
+		p = beginChunk(dst, RECPFile.ChunkType.INGR);
+		dst.putInt(recipe.ingredients.size());
+		for(Ingredient ingredient : recipe.ingredients) {
+			dst.put(ingredient.unit.id);
+			dst.putShort(ingredient.amount.numerator);
+			dst.putShort(ingredient.amount.denominator);
+			putString(dst, ingredient.ingredient);
+		}
+		endChunk(dst, p);
+		
+		// PROC
+		p = beginChunk(dst, RECPFile.ChunkType.PROC);
+		putStrings(dst, recipe.procedure);
+		endChunk(dst, p);
+		
+		// titl
+		if(recipe.title != null) {
+			p = beginChunk(dst, RECPFile.ChunkType.titl);
+			putString(dst, recipe.title);
+			endChunk(dst, p);
+		}
+		
+		// desc
+		if(recipe.description != null) {
+			p = beginChunk(dst, RECPFile.ChunkType.desc);
+			putString(dst, recipe.description);
+			endChunk(dst, p);
+		}
+		
+		// ldsc
+		if(recipe.longDescription != null) {
+			p = beginChunk(dst, RECPFile.ChunkType.ldsc);
+			putString(dst, recipe.longDescription);
+			endChunk(dst, p);
+		}
+		
+		// tags
+		if(recipe.tags != null) {
+			p = beginChunk(dst, RECPFile.ChunkType.tags);
+			dst.putInt(recipe.tags.size());
+			for(String string : recipe.tags) {
+				putShortString(dst, string);
+			}
+			endChunk(dst, p);
+		}
+		
+		// END
+		endChunk(dst, beginChunk(dst, RECPFile.ChunkType.END));
+	}
+	
+	/**
+	 * Write a chunk header with a placeholder size
+	 *
+	 * @return position of the chunk header, to be passed to {@link #endChunk(ByteBuffer, int)}
+	 */
+	protected static int beginChunk(ByteBuffer dst, int type) {
+		int p = dst.position();
+		dst.putInt(0);
+		dst.putInt(type);
+		return p;
+	}
+	
+	/**
+	 * Fill in the size of the chunk that started at position p
+	 */
+	protected static void endChunk(ByteBuffer dst, int p) {
+		dst.putInt(p, dst.position() - p - 8);
+	}
+	
+	/**
+	 * Write a list of strings with 32-bit count and length prefixes
+	 */
+	protected void putStrings(ByteBuffer dst, List<String> strings) {
+		dst.putInt(strings.size());
+		for(String string : strings) {
+			putString(dst, string);
+		}
+	}
+	
+	/**
+	 * Write a string with a 32-bit length prefix
+	 */
+	protected void putString(ByteBuffer dst, String string) {
+		int p = dst.position();
+		dst.putInt(0);
+		putChars(dst, string);
+		dst.putInt(p, dst.position() - p - 4);
+	}
+	
+	/**
+	 * Write a string with an 8-bit length prefix
+	 *
+	 * @throws IllegalArgumentException if the encoded string is longer than 255 bytes
+	 */
+	protected void putShortString(ByteBuffer dst, String string) {
+		int p = dst.position();
+		dst.put((byte) 0);
+		putChars(dst, string);
+		
+		int length = dst.position() - p - 1;
+		if(length > 0xff) {
+			throw new IllegalArgumentException(String.format("String \"%s\" is %d bytes long, maximum is 255", string, length));
+		}
+		dst.put(p, (byte) length);
+	}
+	
+	protected void putChars(ByteBuffer dst, String string) {
+		encoder.reset();
+		CharBuffer in = CharBuffer.wrap(string);
+		
+		CoderResult result = encoder.encode(in, dst, true);
+		if(!result.isUnderflow()) {
+			throwResult(result);
+		}
+		result = encoder.flush(dst);
+		if(!result.isUnderflow()) {
+			throwResult(result);
+		}
+	}
+	
+	private static void throwResult(CoderResult result) {
+		if(result.isOverflow()) {
+			throw new BufferOverflowException();
+		}
+		try {
+			result.throwException();
+		} catch(CharacterCodingException e) {
+			// Can't happen with CodingErrorAction.REPLACE
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -2,15 +2,22 @@ package io.github.ashy1227.recp;
 
 import org.jetbrains.annotations.Nullable;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.Deflater;
 
 /**
  * The raw data of a RECP file sorted into a list of chunks
@@ -20,6 +27,10 @@ public class RECPFile {
 	 * File signature
 	 */
 	public static final int SIGNATURE = 0x52454350;
+	/**
+	 * Chunks smaller than this aren't worth compressing
+	 */
+	public static final int MIN_COMPRESS_SIZE = 64;
 	
 	public List<Chunk> chunks;
 	
@@ -28,113 +39,15 @@ public class RECPFile {
 	}
 	
 	/**
-	 * Construct a RECPFile from a Recipe
+	 * Construct a RECPFile from a Recipe. The whole file is encoded into a single buffer and each chunk is a slice of
+	 * it.
 	 *
 	 * @param charSet desired character encoding. If unsure, use other constructor
+	 * @see RECPEncoder
 	 */
 	public RECPFile(Recipe recipe, Charset charSet) {
-		this.chunks = new ArrayList<>();
-		ByteBuffer b;
-		int s;
-		
-		// META
-		b = ByteBuffer.allocate(8);
-		if(charSet.equals(StandardCharsets.UTF_8)) {
-			b.putLong(TextEncoding.UTF_8);
-		} else if(charSet.equals(StandardCharsets.UTF_16)) {
-			b.putLong(TextEncoding.UTF_16);
-		} else if(charSet.equals(StandardCharsets.ISO_8859_1)) {
-			b.putLong(TextEncoding.ISO_8859);
-		} else if(charSet.equals(StandardCharsets.US_ASCII)) {
-			b.putLong(TextEncoding.ASCII);
-		} else {
-			throw new IllegalArgumentException("Invalid charset. Valid charsets are: StandardCharsets.UTF_8, StandardCharsets.UTF_16, StandardCharsets.ISO_8859_1, StandardCharsets.US_ASCII");
-		}
-		chunks.add(new Chunk(ChunkType.META, b.array()));
-		
-		// INGR
-		s = 4;
-		for(Ingredient ingredient : recipe.ingredients) {
-			s += 9 + ingredient.ingredient.getBytes(charSet).length;
-		}
-		b = ByteBuffer.allocate(s);
-		
-		b.putInt(recipe.ingredients.size());
-		for(Ingredient ingredient : recipe.ingredients) {
-			b.put(ingredient.unit.id);
-			b.putShort(ingredient.amount.numerator);
-			b.putShort(ingredient.amount.denominator);
-			b.putInt(ingredient.ingredient.getBytes(charSet).length);
-			b.put(ingredient.ingredient.getBytes(charSet));
-		}
-		chunks.add(new Chunk(ChunkType.INGR, b.array()));
-		
-		// PROC
-		s = 4;
-		for(String string : recipe.procedure) {
-			s += 4 + string.getBytes(charSet).length;
-		}
-		b = ByteBuffer.allocate(s);
-		
-		b.putInt(recipe.procedure.size());
-		for(String string : recipe.procedure) {
-			b.putInt(string.getBytes(charSet).length);
-			b.put(string.getBytes(charSet));
-		}
-		chunks.add(new Chunk(ChunkType.PROC, b.array()));
-		
-		// titl
-		if(recipe.title != null) {
-			s = 4 + recipe.title.getBytes(charSet).length;
-			b = ByteBuffer.allocate(s);
-			
-			b.putInt(recipe.title.getBytes(charSet).length);
-			b.put(recipe.title.getBytes(charSet));
-			
-			chunks.add(new Chunk(ChunkType.titl, b.array()));
-		}
-		
-		// desc
-		if(recipe.description != null) {
-			s = 4 + recipe.description.getBytes(charSet).length;
-			b = ByteBuffer.allocate(s);
-			
-			b.putInt(recipe.description.getBytes(charSet).length);
-			b.put(recipe.description.getBytes(charSet));
-			
-			chunks.add(new Chunk(ChunkType.desc, b.array()));
-		}
-		
-		// ldsc
-		if(recipe.description != null) {
-			s = 4 + recipe.longDescription.getBytes(charSet).length;
-			b = ByteBuffer.allocate(s);
-			
-			b.putInt(recipe.longDescription.getBytes(charSet).length);
-			b.put(recipe.longDescription.getBytes(charSet));
-			
-			chunks.add(new Chunk(ChunkType.ldsc, b.array()));
-		}
-		
-		// tags
-		if(recipe.tags != null) {
-			s = 4;
-			for(String string : recipe.tags) {
-				s += 1 + string.getBytes(charSet).length;
-			}
-			b = ByteBuffer.allocate(s);
-			
-			b.putInt(recipe.tags.size());
-			for(String string : recipe.tags) {
-				b.put((byte) string.getBytes(charSet).length);
-				b.put(string.getBytes(charSet));
-			}
-			
-			chunks.add(new Chunk(ChunkType.ldsc, b.array()));
-		}
-		
-		// END
-		chunks.add(new Chunk(ChunkType.END, new byte[] {}));
+		// Framing our own encoder's output isn't a read, so the listener isn't told about it
+		this.chunks = fromByteBuffer(new RECPEncoder(charSet).encode(recipe), null).chunks;
 	}
 	
 	/**
@@ -152,15 +65,15 @@ public class RECPFile {
 	public byte[] toByteArray() {
 		int fileLen = 4;
 		for(Chunk c : chunks) {
-			fileLen += 8 + c.data.length;
+			fileLen += 8 + c.data.remaining();
 		}
 		
 		ByteBuffer b = ByteBuffer.allocate(fileLen);
 		b.putInt(SIGNATURE);
 		for(Chunk c : chunks) {
-			b.putInt(c.data.length);
+			b.putInt(c.data.remaining());
 			b.putInt(c.type);
-			b.put(c.data);
+			b.put(c.data.duplicate());
 		}
 		
 		return b.array();
@@ -173,11 +86,25 @@ public class RECPFile {
 	 * @throws IOException if error occurs writing file
 	 */
 	public void writeToPath(Path path) throws IOException {
-		Files.write(path, this.toByteArray());
+		RECPListener l = RECPListener.get();
+		long start = l == null ? 0 : System.nanoTime();
+		
+		try(RECPWriter writer = new RECPWriter(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))) {
+			writer.writeFile(this);
+		}
+		
+		if(l != null) {
+			long size = 4;
+			for(Chunk c : chunks) {
+				size += 8 + c.data.remaining();
+			}
+			l.phase(RECPListener.Phase.WRITE, System.nanoTime() - start, size, 0);
+		}
 	}
 	
 	/**
-	 * Create a RECPFile object from an array of bytes
+	 * Create a RECPFile object from an array of bytes. Chunk data is not copied, so the array must not be modified
+	 * while the RECPFile is in use.
 	 *
 	 * @param file bytes of RECP file
 	 * @return RECPFile object containing a list of chunks from the file
@@ -185,7 +112,28 @@ public class RECPFile {
 	 * @throws BufferUnderflowException if no END chunk is found, if file is empty, or file ends before chunk ends
 	 */
 	public static RECPFile fromByteArray(byte[] file) {
-		ByteBuffer b = ByteBuffer.wrap(file);
+		return fromByteBuffer(ByteBuffer.wrap(file));
+	}
+	
+	/**
+	 * Create a RECPFile object from the remaining bytes of a buffer. Every chunk is a read-only slice of the buffer,
+	 * so only the chunk headers are read here; chunk data is left untouched until it is decoded.
+	 *
+	 * @param file buffer containing a RECP file, starting at its position
+	 * @return RECPFile object containing a list of chunks from the file
+	 * @throws IllegalArgumentException if the file is invalid (No header, wrong chunk ordering, missing required chunks)
+	 * @throws BufferUnderflowException if no END chunk is found, if file is empty, or file ends before chunk ends
+	 */
+	public static RECPFile fromByteBuffer(ByteBuffer file) {
+		return fromByteBuffer(file, RECPListener.get());
+	}
+	
+	/**
+	 * @param l listener to report the chunks and FRAME phase to, or null not to report them
+	 */
+	private static RECPFile fromByteBuffer(ByteBuffer file, @Nullable RECPListener l) {
+		long start = l == null ? 0 : System.nanoTime();
+		ByteBuffer b = file.duplicate();
 		
 		int signature = b.getInt();
 		if(signature != SIGNATURE) {
@@ -201,19 +149,25 @@ public class RECPFile {
 			int size = b.getInt();
 			int type = b.getInt();
 			
-			// All letters are capital
-			if((type & 0x20202020) == 0) {
-				numRequired++;
-			}
-			
 			if(i == 0 && type != ChunkType.META) {
 				throw new IllegalArgumentException("Invalid chunk ordering; META chunk must appear first");
 			}
 			
-			byte[] data = new byte[size];
-			b.get(data);
+			if(size < 0 || size > b.remaining()) {
+				throw new BufferUnderflowException();
+			}
 			
-			chunks.add(new Chunk(type, data));
+			// A compressed chunk counts as the chunk it wraps. All letters are capital.
+			if(ChunkType.isRequired(type == ChunkType.defl ? ChunkCompression.contentType(b, size) : type)) {
+				numRequired++;
+			}
+			
+			// Not read-only, so strings in a heap buffer are decoded straight from its array; see Chunk.data
+			chunks.add(new Chunk(type, b.slice(b.position(), size)));
+			b.position(b.position() + size);
+			if(l != null) {
+				l.chunkRead(type, size);
+			}
 			
 			if(type == ChunkType.END) {
 				break;
@@ -224,6 +178,10 @@ public class RECPFile {
 			throw new IllegalArgumentException(String.format("Not all required chunks are present. Required %d but got %d.", ChunkType.numRequired, numRequired));
 		}
 		
+		if(l != null) {
+			// A Chunk and a read-only slice per chunk
+			l.phase(RECPListener.Phase.FRAME, System.nanoTime() - start, b.position() - file.position(), 96L * chunks.size());
+		}
 		return new RECPFile(chunks);
 	}
 	
@@ -237,7 +195,7 @@ public class RECPFile {
 	public static RECPFile readFromPath(Path path) {
 		byte[] bytes;
 		try {
-			bytes = Files.readAllBytes(path);
+			bytes = readAllBytes(path);
 		} catch(IOException e) {
 			e.printStackTrace();
 			return null;
@@ -246,20 +204,459 @@ public class RECPFile {
 		return fromByteArray(bytes);
 	}
 	
+	/**
+	 * Create a RECPFile object from a memory-mapped file. Nothing is copied: each chunk is a slice of the mapping and
+	 * is only paged in once its data is read, so chunks that are never decoded cost nothing.
+	 *
+	 * @param path filepath of RECP file
+	 * @return RECPFile object whose chunks are views into the mapped file
+	 * @throws IOException if error occurs mapping the file
+	 * @throws IllegalArgumentException if the file is invalid (see {@link #fromByteBuffer(ByteBuffer)})
+	 */
+	public static RECPFile mapFromPath(Path path) throws IOException {
+		RECPListener l = RECPListener.get();
+		long start = l == null ? 0 : System.nanoTime();
+		
+		MappedByteBuffer b;
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			b = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		
+		if(l != null) {
+			l.phase(RECPListener.Phase.READ, System.nanoTime() - start, b.capacity(), 0);
+		}
+		return fromByteBuffer(b);
+	}
+	
+	/**
+	 * Files.readAllBytes, reported to the {@link RECPListener} as a read
+	 */
+	static byte[] readAllBytes(Path path) throws IOException {
+		RECPListener l = RECPListener.get();
+		if(l == null) {
+			return Files.readAllBytes(path);
+		}
+		
+		long start = System.nanoTime();
+		byte[] bytes = Files.readAllBytes(path);
+		l.phase(RECPListener.Phase.READ, System.nanoTime() - start, bytes.length, bytes.length);
+		return bytes;
+	}
+	
+	/**
+	 * Get the first chunk of a given type. A compressed chunk of that type is decompressed.
+	 *
+	 * @param type chunk type, see {@link ChunkType}
+	 * @return the chunk, or null if the file has no chunk of that type
+	 * @throws IllegalArgumentException if the chunk is compressed and can't be decompressed
+	 */
+	@Nullable
+	public Chunk getChunk(int type) {
+		for(Chunk c : chunks) {
+			if(c.type == type) {
+				return c;
+			}
+			if(c.type == ChunkType.defl && c.getContentType() == type) {
+				return c.decompressed();
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Replace the first chunk of the same type, compressed or not, or add the chunk before END if there is none
+	 *
+	 * @throws IllegalArgumentException if the chunk is META or END
+	 */
+	public void setChunk(Chunk chunk) {
+		checkEditable(chunk.getContentType());
+		for(int i = 0; i < chunks.size(); i++) {
+			if(chunks.get(i).getContentType() == chunk.getContentType()) {
+				chunks.set(i, chunk);
+				return;
+			}
+		}
+		int end = chunks.size();
+		while(end > 0 && chunks.get(end - 1).type == ChunkType.END) {
+			end--;
+		}
+		chunks.add(end, chunk);
+	}
+	
+	/**
+	 * Remove the first chunk of a type, compressed or not
+	 *
+	 * @return true if a chunk was removed
+	 * @throws IllegalArgumentException if the chunk type is required
+	 */
+	public boolean removeChunk(int type) {
+		checkRemovable(type);
+		for(int i = 0; i < chunks.size(); i++) {
+			if(chunks.get(i).getContentType() == type) {
+				chunks.remove(i);
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Replace a single chunk of a RECP file on disk, or add it before END if the file has no chunk of that type, without
+	 * decoding or re-encoding the rest of the file.
+	 * <p>
+	 * If the new chunk has the same type and size as the old one, only its data is overwritten in place. Otherwise the
+	 * file is copied to a temporary file with the chunk swapped out, and the temporary file is atomically renamed over
+	 * the original, so readers never see a half-written file.
+	 *
+	 * @throws IllegalArgumentException if the chunk is META or END, or the file is invalid
+	 * @throws IOException if error occurs reading or writing the file
+	 */
+	public static void patchChunk(Path path, Chunk chunk) throws IOException {
+		checkEditable(chunk.getContentType());
+		
+		ChunkLocation old = null;
+		ChunkLocation end;
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			List<ChunkLocation> locations = ChunkLocation.scan(channel);
+			end = locations.get(locations.size() - 1);
+			for(ChunkLocation location : locations) {
+				if(location.contentType == chunk.getContentType()) {
+					old = location;
+					break;
+				}
+			}
+			
+			// The header is left alone, so a compressed chunk can't replace a raw one in place or the reverse
+			if(old != null && old.type == chunk.type && old.size == chunk.data.remaining()) {
+				ChunkLocation.writeFully(channel, chunk.data.duplicate(), old.dataOffset());
+				return;
+			}
+		}
+		
+		if(old != null) {
+			rewrite(path, old.offset, old.end(), chunk);
+		} else {
+			rewrite(path, end.offset, end.offset, chunk);
+		}
+	}
+	
+	/**
+	 * Remove a single chunk from a RECP file on disk, without decoding or re-encoding the rest of the file. The file is
+	 * rewritten to a temporary file that is atomically renamed over the original.
+	 *
+	 * @return true if a chunk was removed, false if the file has no chunk of that type
+	 * @throws IllegalArgumentException if the chunk type is required, or the file is invalid
+	 * @throws IOException if error occurs reading or writing the file
+	 */
+	public static boolean removeChunk(Path path, int type) throws IOException {
+		checkRemovable(type);
+		
+		ChunkLocation old = null;
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			for(ChunkLocation location : ChunkLocation.scan(channel)) {
+				if(location.contentType == type) {
+					old = location;
+					break;
+				}
+			}
+		}
+		
+		if(old == null) {
+			return false;
+		}
+		rewrite(path, old.offset, old.end(), null);
+		return true;
+	}
+	
+	/**
+	 * Copy a file to a temporary file with the bytes from cutStart to cutEnd replaced by a chunk, then rename it over
+	 * the original
+	 *
+	 * @param chunk chunk to put in place of the cut bytes, or null to only remove them
+	 */
+	private static void rewrite(Path path, long cutStart, long cutEnd, @Nullable Chunk chunk) throws IOException {
+		// Replace the file a symlink points to, not the symlink
+		path = path.toRealPath();
+		Path dir = path.getParent();
+		Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+		try {
+			// Temporary files are only readable by their owner, so give it the original's permissions
+			if(Files.getFileStore(path).supportsFileAttributeView(PosixFileAttributeView.class)) {
+				Files.setPosixFilePermissions(tmp, Files.getPosixFilePermissions(path));
+			}
+			try(FileChannel in = FileChannel.open(path, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+				transferFully(in, 0, cutStart, out);
+				if(chunk != null) {
+					ByteBuffer header = ByteBuffer.allocate(8);
+					header.putInt(chunk.data.remaining());
+					header.putInt(chunk.type);
+					ByteBuffer[] buffers = {header.flip(), chunk.data.duplicate()};
+					while(buffers[1].hasRemaining() || buffers[0].hasRemaining()) {
+						out.write(buffers);
+					}
+				}
+				transferFully(in, cutEnd, in.size() - cutEnd, out);
+				out.force(false);
+			}
+			Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+	
+	/**
+	 * Append count bytes of in, starting at position, to out
+	 *
+	 * @throws EOFException if in ends first, e.g. because it shrank while being copied
+	 */
+	private static void transferFully(FileChannel in, long position, long count, FileChannel out) throws IOException {
+		while(count > 0) {
+			long n = in.transferTo(position, count, out);
+			if(n <= 0) {
+				throw new EOFException(String.format("File ended at %d while copying, %d bytes short", position, count));
+			}
+			position += n;
+			count -= n;
+		}
+	}
+	
+	/**
+	 * Compress chunks of some types, e.g. {@code file.compress(dictionary, ChunkType.PROC, ChunkType.ldsc)} for the
+	 * long text. Chunks that are smaller than {@link #MIN_COMPRESS_SIZE} or wouldn't get smaller are left alone, so
+	 * short chunks such as titl and tags stay cheap to read.
+	 *
+	 * @param dictionary preset dictionary, or null for none
+	 * @throws IllegalArgumentException if a type is META, END or defl
+	 */
+	public void compress(@Nullable ChunkDictionary dictionary, int... types) {
+		for(int type : types) {
+			checkEditable(type);
+		}
+		for(int i = 0; i < chunks.size(); i++) {
+			Chunk c = chunks.get(i);
+			if(c.type == ChunkType.defl || c.data.remaining() < MIN_COMPRESS_SIZE || !contains(types, c.type)) {
+				continue;
+			}
+			Chunk compressed = c.compressed(dictionary, Deflater.DEFAULT_COMPRESSION);
+			if(compressed.data.remaining() < c.data.remaining()) {
+				chunks.set(i, compressed);
+			}
+		}
+	}
+	
+	/**
+	 * Decompress every compressed chunk
+	 *
+	 * @throws IllegalArgumentException if a chunk can't be decompressed
+	 */
+	public void decompress() {
+		chunks.replaceAll(Chunk::decompressed);
+	}
+	
+	/**
+	 * 64-bit hash of every chunk's type and bytes, in order, computed without decoding anything. Files with the same
+	 * fingerprint almost certainly have the same bytes, so a stored fingerprint is enough to skip an unchanged file.
+	 * Compressed chunks are hashed as stored, and the same recipe in another text encoding has another fingerprint.
+	 */
+	public long fingerprint() {
+		long h = chunks.size();
+		for(Chunk c : chunks) {
+			h = Fingerprint.mix(h, c.fingerprint());
+		}
+		return Fingerprint.finish(h);
+	}
+	
+	/**
+	 * Files are equal if they have equal chunks in the same order. The hash combines the chunks' cached hashes, so
+	 * only chunks that haven't been hashed before are read.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		return obj != null && this.getClass() == obj.getClass() && chunks.equals(((RECPFile) obj).chunks);
+	}
+	
+	@Override
+	public int hashCode() {
+		return chunks.hashCode();
+	}
+	
+	private static boolean contains(int[] types, int type) {
+		for(int t : types) {
+			if(t == type) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static void checkEditable(int type) {
+		if(type == ChunkType.META || type == ChunkType.END) {
+			throw new IllegalArgumentException(String.format("%s chunk can't be replaced", ChunkType.toString(type)));
+		}
+	}
+	
+	private static void checkRemovable(int type) {
+		if(ChunkType.isRequired(type)) {
+			throw new IllegalArgumentException(String.format("Required chunk %s can't be removed", ChunkType.toString(type)));
+		}
+	}
+	
 	public static class Chunk {
-		int type;
-		byte[] data;
+		final int type;
+		/**
+		 * Never written to. Only handed out read-only, through {@link #getData()}.
+		 */
+		final ByteBuffer data;
 		
-		public Chunk(int type, byte[] data) {
+		/**
+		 * Cached {@link #hashCode()} and {@link #fingerprint()}, 0 until computed. Chunks are shared between threads,
+		 * and unlike an int a long write can tear, so the fingerprint is volatile.
+		 */
+		private int hash;
+		private volatile long fingerprint;
+		
+		/**
+		 * @param data the chunk's data, from position to limit, which must not be modified afterwards
+		 */
+		public Chunk(int type, ByteBuffer data) {
 			this.type = type;
 			this.data = data;
 		}
+		
+		public Chunk(int type, byte[] data) {
+			this(type, ByteBuffer.wrap(data));
+		}
+		
+		public int getType() {
+			return type;
+		}
+		
+		/**
+		 * Type of the chunk's content: the wrapped type if this is a {@link ChunkType#defl defl} chunk, otherwise the
+		 * same as {@link #getType()}
+		 */
+		public int getContentType() {
+			return type == ChunkType.defl && data.remaining() >= 4 ? data.getInt(data.position()) : type;
+		}
+		
+		public boolean isCompressed() {
+			return type == ChunkType.defl;
+		}
+		
+		/**
+		 * Get this chunk wrapped in a {@link ChunkType#defl defl} chunk
+		 *
+		 * @param dictionary preset dictionary, or null for none. It must be {@link ChunkDictionary#register registered}
+		 *                   wherever the chunk is read.
+		 * @param level      compression level, see {@link java.util.zip.Deflater}
+		 * @throws IllegalArgumentException if this chunk is META, END or already compressed
+		 */
+		public Chunk compressed(@Nullable ChunkDictionary dictionary, int level) {
+			return ChunkCompression.compress(this, dictionary, level);
+		}
+		
+		/**
+		 * Get the chunk wrapped by a {@link ChunkType#defl defl} chunk, or this chunk if it isn't compressed
+		 *
+		 * @throws IllegalArgumentException if the compressed data is invalid or its dictionary isn't registered
+		 */
+		public Chunk decompressed() {
+			return type == ChunkType.defl ? ChunkCompression.decompress(this) : this;
+		}
+		
+		/**
+		 * Size of the chunk data in bytes
+		 */
+		public int getSize() {
+			return data.remaining();
+		}
+		
+		/**
+		 * Chunk data as a read-only buffer with its own position, so it can be read without affecting other readers
+		 */
+		public ByteBuffer getData() {
+			return data.asReadOnlyBuffer();
+		}
+		
+		/**
+		 * 64-bit hash of the chunk's type and data, see {@link RECPFile#fingerprint()}
+		 */
+		public long fingerprint() {
+			long f = fingerprint;
+			if(f == 0) {
+				f = Fingerprint.of(data, type);
+				fingerprint = f;
+			}
+			return f;
+		}
+		
+		/**
+		 * Chunks are equal if they have the same type and the same data
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			return obj != null && this.getClass() == obj.getClass()
+				   && ((Chunk) obj).type == this.type
+				   && ((Chunk) obj).data.equals(this.data);
+		}
+		
+		@Override
+		public int hashCode() {
+			int h = hash;
+			if(h == 0) {
+				h = 31 * type + data.hashCode();
+				hash = h;
+			}
+			return h;
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("%s (%d bytes)", ChunkType.toString(type), data.remaining());
+		}
 	}
 	public static class TextEncoding {
 		public static final long UTF_8 = 0x0000005554462D38L;
 		public static final long UTF_16 = 0x00005554462D3136L;
 		public static final long ISO_8859 = 0x49534F2D38383539L;
 		public static final long ASCII = 0x55532D4153434949L;
+		
+		/**
+		 * Get the text encoding ID of a Charset
+		 *
+		 * @throws IllegalArgumentException if the charset isn't a valid RECP character encoding
+		 */
+		public static long fromCharset(Charset charSet) {
+			if(charSet.equals(StandardCharsets.UTF_8)) {
+				return UTF_8;
+			} else if(charSet.equals(StandardCharsets.UTF_16)) {
+				return UTF_16;
+			} else if(charSet.equals(StandardCharsets.ISO_8859_1)) {
+				return ISO_8859;
+			} else if(charSet.equals(StandardCharsets.US_ASCII)) {
+				return ASCII;
+			} else {
+				throw new IllegalArgumentException("Invalid charset. Valid charsets are: StandardCharsets.UTF_8, StandardCharsets.UTF_16, StandardCharsets.ISO_8859_1, StandardCharsets.US_ASCII");
+			}
+		}
+		
+		/**
+		 * Get the Charset of a text encoding ID
+		 *
+		 * @return the charset, or ISO-8859-1 if the ID is unknown
+		 */
+		public static Charset toCharset(long textEncoding) {
+			if(textEncoding == UTF_8) {
+				return StandardCharsets.UTF_8;
+			} else if(textEncoding == UTF_16) {
+				return StandardCharsets.UTF_16;
+			} else if(textEncoding == ASCII) {
+				return StandardCharsets.US_ASCII;
+			} else {
+				return StandardCharsets.ISO_8859_1;
+			}
+		}
 	}
 	public static class ChunkType {
 		public static final int META = 0x4D455441;
@@ -271,10 +668,36 @@ public class RECPFile {
 		public static final int desc = 0x64657363;
 		public static final int ldsc = 0x6C647363;
 		public static final int tags = 0x74616773;
+		/**
+		 * A compressed chunk of another type. Its data is the wrapped chunk's type, its uncompressed size, the
+		 * {@link ChunkDictionary#getId() id} of the preset dictionary or 0 for none, then the data as raw deflate.
+		 */
+		public static final int defl = 0x6465666C;
 		
 		/**
 		 * Number of required chunk types
 		 */
 		public static final int numRequired = 4;
+		
+		/**
+		 * Whether a chunk type is required. Required chunk types are all capital letters.
+		 */
+		public static boolean isRequired(int type) {
+			return (type & 0x20202020) == 0;
+		}
+		
+		/**
+		 * Chunk type as text, e.g. "titl"
+		 */
+		public static String toString(int type) {
+			StringBuilder sb = new StringBuilder(4);
+			for(int shift = 24; shift >= 0; shift -= 8) {
+				char c = (char) ((type >>> shift) & 0xff);
+				if(c != 0) {
+					sb.append(c);
+				}
+			}
+			return sb.toString();
+		}
 	}
 }
@@ -0,0 +1,100 @@
+package io.github.ashy1227.recp;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Receives timings and counts from the library's read, decode, encode and write paths
+ * <p>
+ * No listener is installed by default. The hot paths then only check a volatile field for null, so instrumentation
+ * costs nothing noticeable until {@link #set(RECPListener)} is called. Every method does nothing by default, so a
+ * listener only overrides what it's interested in. Methods are called on whichever thread did the work, possibly many
+ * at once, and must be thread-safe and fast.
+ *
+ * @see CountingListener
+ * @see JFRListener
+ */
+public abstract class RECPListener {
+	@Nullable private static volatile RECPListener listener;
+	
+	/**
+	 * Stages of getting a recipe in and out of a file
+	 */
+	public enum Phase {
+		/**
+		 * Reading or mapping a file into memory
+		 */
+		READ,
+		/**
+		 * Splitting a file into chunks, see {@link RECPFile#fromByteBuffer(java.nio.ByteBuffer)}
+		 */
+		FRAME,
+		/**
+		 * Decoding chunks into a Recipe or ImmutableRecipe
+		 */
+		DECODE,
+		/**
+		 * Encoding a Recipe into RECP bytes
+		 */
+		ENCODE,
+		/**
+		 * Writing an encoded file to disk
+		 */
+		WRITE
+	}
+	
+	/**
+	 * The installed listener, or null if there isn't one
+	 */
+	@Nullable
+	public static RECPListener get() {
+		return listener;
+	}
+	
+	/**
+	 * Install a listener, replacing the current one
+	 *
+	 * @param listener the listener, or null to turn instrumentation off
+	 */
+	public static void set(@Nullable RECPListener listener) {
+		RECPListener.listener = listener;
+	}
+	
+	/**
+	 * A phase finished
+	 *
+	 * @param nanos     time taken
+	 * @param bytes     bytes read, framed, decoded, encoded or written
+	 * @param allocated estimate of the bytes of heap allocated
+	 */
+	public void phase(Phase phase, long nanos, long bytes, long allocated) {
+	
+	}
+	
+	/**
+	 * A chunk was framed from a file or read by a {@link RECPReader}
+	 *
+	 * @param size size of the chunk's data
+	 */
+	public void chunkRead(int type, int size) {
+	
+	}
+	
+	/**
+	 * A chunk was written to a file, by a {@link RECPWriter} or as part of an encoded recipe
+	 *
+	 * @param size size of the chunk's data
+	 */
+	public void chunkWritten(int type, int size) {
+	
+	}
+	
+	/**
+	 * Strings were decoded from a recipe's chunks
+	 *
+	 * @param count number of strings, including ones taken from a {@link StringPool}
+	 * @param bytes size of the chunks they were decoded from
+	 */
+	public void stringsDecoded(int count, long bytes) {
+	
+	}
+}
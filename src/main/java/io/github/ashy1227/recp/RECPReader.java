@@ -0,0 +1,269 @@
+package io.github.ashy1227.recp;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a RECP file from a channel one chunk at a time, through a fixed-size buffer that is reused for every chunk.
+ * Memory use is bounded by the buffer size no matter how large the file is, unless a whole chunk is requested with
+ * {@link #readChunk()}.
+ * <pre>{@code
+ * while(reader.next()) {
+ *     if(reader.getType() == RECPFile.ChunkType.titl) {
+ *         RECPFile.Chunk title = reader.readChunk();
+ *     }
+ * }
+ * }</pre>
+ */
+public class RECPReader implements Closeable {
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+	
+	protected final ReadableByteChannel channel;
+	protected final ByteBuffer buffer;
+	protected final BufferPool pool;
+	
+	private int type;
+	private int size;
+	/**
+	 * Bytes of the current chunk's data that have not been consumed yet
+	 */
+	private int remaining;
+	
+	private int numChunks;
+	private int numRequired;
+	private boolean started;
+	private boolean ended;
+	private boolean closed;
+	
+	/**
+	 * @param pool pool the buffer is borrowed from, and returned to on {@link #close()}
+	 */
+	public RECPReader(ReadableByteChannel channel, int bufferSize, BufferPool pool) {
+		if(bufferSize < 16) {
+			throw new IllegalArgumentException("Buffer size must be at least 16 bytes");
+		}
+		this.channel = channel;
+		this.pool = pool;
+		this.buffer = pool.acquire(bufferSize);
+		this.buffer.flip();
+	}
+	
+	public RECPReader(ReadableByteChannel channel, int bufferSize) {
+		this(channel, bufferSize, BufferPool.getDefault());
+	}
+	
+	public RECPReader(ReadableByteChannel channel) {
+		this(channel, DEFAULT_BUFFER_SIZE);
+	}
+	
+	/**
+	 * Advance to the next chunk, skipping whatever is left of the current one
+	 *
+	 * @return true if positioned at a chunk, false once the END chunk has been reached
+	 * @throws IllegalArgumentException if the file is invalid (No header, wrong chunk ordering, missing required chunks)
+	 * @throws EOFException if the channel ends before the END chunk
+	 * @throws IOException if error occurs reading from the channel
+	 */
+	public boolean next() throws IOException {
+		if(ended) {
+			return false;
+		}
+		if(!started) {
+			require(4);
+			if(buffer.getInt() != RECPFile.SIGNATURE) {
+				throw new IllegalArgumentException("Invalid file signature");
+			}
+			started = true;
+		}
+		skip();
+		
+		require(8);
+		size = buffer.getInt();
+		type = buffer.getInt();
+		remaining = size;
+		
+		if(size < 0) {
+			throw new IllegalArgumentException(String.format("Invalid chunk size %d", size));
+		}
+		
+		// A compressed chunk counts as the chunk it wraps. All letters are capital.
+		int content = type;
+		if(type == RECPFile.ChunkType.defl) {
+			require(Math.min(size, 4));
+			content = ChunkCompression.contentType(buffer, size);
+		}
+		if(RECPFile.ChunkType.isRequired(content)) {
+			numRequired++;
+		}
+		
+		if(numChunks++ == 0 && type != RECPFile.ChunkType.META) {
+			throw new IllegalArgumentException("Invalid chunk ordering; META chunk must appear first");
+		}
+		
+		RECPListener l = RECPListener.get();
+		if(l != null) {
+			l.chunkRead(type, size);
+		}
+		
+		if(type == RECPFile.ChunkType.END) {
+			ended = true;
+			if(numRequired != RECPFile.ChunkType.numRequired) {
+				throw new IllegalArgumentException(String.format("Not all required chunks are present. Required %d but got %d.", RECPFile.ChunkType.numRequired, numRequired));
+			}
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Type of the current chunk, see {@link RECPFile.ChunkType}
+	 */
+	public int getType() {
+		return type;
+	}
+	
+	/**
+	 * Size of the current chunk's data in bytes
+	 */
+	public int getSize() {
+		return size;
+	}
+	
+	/**
+	 * Read data from the current chunk
+	 *
+	 * @param dst buffer to read into
+	 * @return number of bytes read, or -1 if the current chunk has no more data
+	 * @throws IOException if error occurs reading from the channel
+	 */
+	public int read(ByteBuffer dst) throws IOException {
+		if(remaining == 0) {
+			return -1;
+		}
+		if(!buffer.hasRemaining()) {
+			fill();
+		}
+		
+		int n = Math.min(Math.min(remaining, buffer.remaining()), dst.remaining());
+		ByteBuffer src = buffer.slice(buffer.position(), n);
+		dst.put(src);
+		buffer.position(buffer.position() + n);
+		remaining -= n;
+		return n;
+	}
+	
+	/**
+	 * Read all of the current chunk's data into a newly allocated chunk
+	 *
+	 * @throws IllegalStateException if part of the chunk has already been read
+	 * @throws IOException if error occurs reading from the channel
+	 */
+	public RECPFile.Chunk readChunk() throws IOException {
+		if(remaining != size) {
+			throw new IllegalStateException("Chunk has already been partially read");
+		}
+		
+		ByteBuffer data = ByteBuffer.allocate(size);
+		while(data.hasRemaining()) {
+			read(data);
+		}
+		return new RECPFile.Chunk(type, data.flip());
+	}
+	
+	/**
+	 * Copy the rest of the current chunk's data to a channel through the reader's buffer
+	 *
+	 * @return number of bytes transferred
+	 * @throws IOException if error occurs reading or writing
+	 */
+	public long transferTo(WritableByteChannel out) throws IOException {
+		long transferred = 0;
+		while(remaining > 0) {
+			if(!buffer.hasRemaining()) {
+				fill();
+			}
+			
+			int n = Math.min(remaining, buffer.remaining());
+			ByteBuffer src = buffer.slice(buffer.position(), n);
+			while(src.hasRemaining()) {
+				out.write(src);
+			}
+			buffer.position(buffer.position() + n);
+			remaining -= n;
+			transferred += n;
+		}
+		return transferred;
+	}
+	
+	/**
+	 * Discard the rest of the current chunk's data
+	 *
+	 * @throws IOException if error occurs reading from the channel
+	 */
+	public void skip() throws IOException {
+		while(remaining > 0) {
+			if(!buffer.hasRemaining()) {
+				fill();
+			}
+			
+			int n = Math.min(remaining, buffer.remaining());
+			buffer.position(buffer.position() + n);
+			remaining -= n;
+		}
+	}
+	
+	/**
+	 * Read every remaining chunk into a RECPFile
+	 *
+	 * @throws IllegalArgumentException if the file is invalid
+	 * @throws IOException if error occurs reading from the channel
+	 */
+	public RECPFile readFile() throws IOException {
+		List<RECPFile.Chunk> chunks = new ArrayList<>();
+		while(next()) {
+			chunks.add(readChunk());
+		}
+		chunks.add(new RECPFile.Chunk(RECPFile.ChunkType.END, new byte[] {}));
+		return new RECPFile(chunks);
+	}
+	
+	/**
+	 * Close the channel and return the buffer to its pool
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		try {
+			channel.close();
+		} finally {
+			pool.release(buffer);
+		}
+	}
+	
+	/**
+	 * Make sure at least n bytes (at most the buffer's capacity) are buffered
+	 */
+	private void require(int n) throws IOException {
+		while(buffer.remaining() < n) {
+			fill();
+		}
+	}
+	
+	private void fill() throws IOException {
+		buffer.compact();
+		int read = channel.read(buffer);
+		buffer.flip();
+		if(read < 0) {
+			throw new EOFException("File ended before END chunk");
+		}
+	}
+}
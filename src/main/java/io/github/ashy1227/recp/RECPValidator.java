@@ -0,0 +1,511 @@
+package io.github.ashy1227.recp;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Checks that a RECP file is well-formed without decoding it
+ * <p>
+ * The validator walks the chunk headers and the length fields inside the INGR, PROC, tags and text chunks, skipping
+ * over everything else. Only the header of a compressed chunk is checked: the type it wraps, its uncompressed size
+ * and that its dictionary is registered. Its content isn't, since that would mean inflating it. The validator never
+ * allocates based on a size read from the file, so it runs in the same small amount of memory whatever the input
+ * claims, and it stops at the first problem, reporting where it is and what is wrong.
+ * <p>
+ * A file that passes can be read by {@link RECPFile#fromByteBuffer(ByteBuffer)}, and its uncompressed chunks can be
+ * decoded by {@link Recipe#Recipe(RECPFile)} without buffer underflows. A compressed chunk can still turn out to hold
+ * invalid deflate data or invalid content once inflated.
+ */
+public class RECPValidator {
+	/**
+	 * Size of the read buffer used for channels
+	 */
+	public static final int BUFFER_SIZE = 4096;
+	
+	private static final int REQUIRED_META = 1;
+	private static final int REQUIRED_INGR = 2;
+	private static final int REQUIRED_PROC = 4;
+	
+	/**
+	 * Validate a file in memory
+	 *
+	 * @return the first problem found, or null if the file is valid
+	 */
+	@Nullable
+	public static Problem validate(ByteBuffer file) {
+		try {
+			return new RECPValidator().run(new Input(file.duplicate(), null, file.remaining()));
+		} catch(IOException e) {
+			// Only reading from a channel can throw
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Validate a file read from a channel. The channel is read up to the end of the END chunk. If it is seekable,
+	 * skipped data is seeked over rather than read and chunk sizes are checked against its size.
+	 *
+	 * @return the first problem found, or null if the file is valid
+	 * @throws IOException if error occurs reading from the channel
+	 */
+	@Nullable
+	public static Problem validate(ReadableByteChannel channel) throws IOException {
+		long length = channel instanceof SeekableByteChannel s ? s.size() - s.position() : -1;
+		return new RECPValidator().run(new Input(ByteBuffer.allocate(BUFFER_SIZE).limit(0), channel, length));
+	}
+	
+	/**
+	 * Validate a file on disk
+	 *
+	 * @return the first problem found, or null if the file is valid
+	 * @throws IOException if error occurs reading the file
+	 */
+	@Nullable
+	public static Problem validate(Path path) throws IOException {
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return validate(channel);
+		}
+	}
+	
+	private RECPValidator() {}
+	
+	@Nullable
+	private Problem run(Input in) throws IOException {
+		if(!in.request(4)) {
+			return new Problem(0, Reason.TRUNCATED, "File is shorter than its signature");
+		}
+		if(in.getInt() != RECPFile.SIGNATURE) {
+			return new Problem(0, Reason.INVALID_SIGNATURE, "Invalid file signature");
+		}
+		
+		int required = 0;
+		boolean first = true;
+		while(true) {
+			long offset = in.position;
+			if(!in.request(8)) {
+				return new Problem(offset, Reason.TRUNCATED, "File ended before END chunk");
+			}
+			int size = in.getInt();
+			int type = in.getInt();
+			String name = RECPFile.ChunkType.toString(type);
+			
+			if(size < 0) {
+				return new Problem(offset, Reason.INVALID_SIZE, String.format("Negative size %d for %s chunk", size, name));
+			}
+			if(in.length >= 0 && size > in.length - in.position) {
+				return new Problem(offset, Reason.INVALID_SIZE, String.format("Size %d of %s chunk is past the end of the file", size, name));
+			}
+			if(first && type != RECPFile.ChunkType.META) {
+				return new Problem(offset, Reason.INVALID_ORDER, "META chunk must appear first");
+			}
+			if(!first && type == RECPFile.ChunkType.META) {
+				return new Problem(offset, Reason.INVALID_ORDER, "Duplicate META chunk");
+			}
+			first = false;
+			
+			ChunkBounds chunk = new ChunkBounds(in, offset, size, name);
+			int content = type;
+			if(type == RECPFile.ChunkType.defl) {
+				Problem problem = chunk.need(ChunkCompression.HEADER_SIZE, "defl chunk is too small for its header");
+				if(problem != null) {
+					return problem;
+				}
+				content = in.getInt();
+				int uncompressed = in.getInt();
+				int dictionary = in.getInt();
+				name = RECPFile.ChunkType.toString(content);
+				if(content == RECPFile.ChunkType.META || content == RECPFile.ChunkType.END || content == RECPFile.ChunkType.defl) {
+					return new Problem(offset, Reason.INVALID_COMPRESSION, String.format("%s chunk can't be compressed", name));
+				}
+				if(!isKnown(content) && RECPFile.ChunkType.isRequired(content)) {
+					return new Problem(offset, Reason.UNKNOWN_REQUIRED_CHUNK, String.format("Unknown required chunk %s", name));
+				}
+				// The same bounds ChunkCompression.decompress() enforces
+				if(uncompressed < 0 || uncompressed > (long) (size - ChunkCompression.HEADER_SIZE) * ChunkCompression.MAX_RATIO + 64) {
+					return new Problem(offset, Reason.INVALID_COMPRESSION, String.format("Invalid uncompressed size %d for compressed %s chunk", uncompressed, name));
+				}
+				if(dictionary != 0 && ChunkDictionary.get(dictionary) == null) {
+					return new Problem(offset, Reason.INVALID_COMPRESSION, String.format("Compressed %s chunk needs unknown dictionary %08x", name, dictionary));
+				}
+			}
+			
+			Problem problem = switch(type) {
+				case RECPFile.ChunkType.META -> chunk.need(8, "META chunk is too small for its text encoding");
+				case RECPFile.ChunkType.INGR -> checkIngredients(chunk);
+				case RECPFile.ChunkType.PROC -> checkStrings(chunk, 4, 4);
+				case RECPFile.ChunkType.tags -> checkStrings(chunk, 1, 1);
+				case RECPFile.ChunkType.titl, RECPFile.ChunkType.desc, RECPFile.ChunkType.ldsc -> checkString(chunk);
+				case RECPFile.ChunkType.END -> size == 0 ? null : new Problem(offset, Reason.INVALID_SIZE, String.format("END chunk has size %d instead of 0", size));
+				case RECPFile.ChunkType.defl -> null;
+				default -> RECPFile.ChunkType.isRequired(type)
+					? new Problem(offset, Reason.UNKNOWN_REQUIRED_CHUNK, String.format("Unknown required chunk %s", name))
+					: null;
+			};
+			if(problem != null) {
+				return problem;
+			}
+			
+			int bit = switch(content) {
+				case RECPFile.ChunkType.META -> REQUIRED_META;
+				case RECPFile.ChunkType.INGR -> REQUIRED_INGR;
+				case RECPFile.ChunkType.PROC -> REQUIRED_PROC;
+				default -> 0;
+			};
+			if((required & bit) != 0) {
+				return new Problem(offset, Reason.INVALID_ORDER, String.format("Duplicate %s chunk", name));
+			}
+			required |= bit;
+			
+			if(type == RECPFile.ChunkType.END) {
+				if(required != (REQUIRED_META | REQUIRED_INGR | REQUIRED_PROC)) {
+					return new Problem(offset, Reason.MISSING_REQUIRED_CHUNK, String.format("Missing required chunk%s%s before END",
+						(required & REQUIRED_INGR) == 0 ? " INGR" : "",
+						(required & REQUIRED_PROC) == 0 ? " PROC" : ""
+					));
+				}
+				return null;
+			}
+			
+			// Skip whatever the content checks didn't read
+			if(!in.skip(chunk.end - in.position)) {
+				return new Problem(offset, Reason.TRUNCATED, String.format("File ended inside %s chunk", name));
+			}
+		}
+	}
+	
+	/**
+	 * Whether {@link Fraction#of(long, long)} accepts an amount: the denominator isn't zero, and the amount still fits
+	 * in 16 bits once the sign is moved to the numerator and it's reduced, which fails for e.g. 1/-32768
+	 */
+	private static boolean isValidAmount(short numerator, short denominator) {
+		if(denominator == 0) {
+			return false;
+		}
+		long n = denominator < 0 ? -numerator : numerator;
+		long d = Math.abs((long) denominator);
+		long g = Fraction.gcd(n, d);
+		return n / g == (short) (n / g) && d / g == (short) (d / g);
+	}
+	
+	/**
+	 * Whether this version understands a chunk type
+	 */
+	private static boolean isKnown(int type) {
+		return switch(type) {
+			case RECPFile.ChunkType.META, RECPFile.ChunkType.INGR, RECPFile.ChunkType.PROC, RECPFile.ChunkType.END,
+				 RECPFile.ChunkType.titl, RECPFile.ChunkType.desc, RECPFile.ChunkType.ldsc, RECPFile.ChunkType.tags,
+				 RECPFile.ChunkType.defl -> true;
+			default -> false;
+		};
+	}
+	
+	@Nullable
+	private static Problem checkIngredients(ChunkBounds chunk) throws IOException {
+		Problem problem = chunk.need(4, "INGR chunk is too small for its count");
+		if(problem != null) {
+			return problem;
+		}
+		long at = chunk.in.position;
+		int count = chunk.in.getInt();
+		// Each ingredient is at least a unit, an amount and a string size
+		if(count < 0 || (long) count * 9 > chunk.remaining()) {
+			return chunk.problem(at, Reason.INVALID_COUNT, String.format("Invalid ingredient count %d", count));
+		}
+		for(int i = 0; i < count; i++) {
+			problem = chunk.need(9, String.format("Ingredient %d is past the end of the INGR chunk", i));
+			if(problem != null) {
+				return problem;
+			}
+			chunk.in.skipBuffered(1);
+			at = chunk.in.position;
+			short numerator = chunk.in.getShort();
+			short denominator = chunk.in.getShort();
+			if(!isValidAmount(numerator, denominator)) {
+				return chunk.problem(at, Reason.INVALID_AMOUNT, String.format("Ingredient %d has invalid amount %d/%d", i, numerator, denominator));
+			}
+			at = chunk.in.position;
+			problem = skipString(chunk, at, chunk.in.getInt(), String.format("Ingredient %d", i));
+			if(problem != null) {
+				return problem;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Check a count followed by that many length-prefixed strings
+	 *
+	 * @param lengthSize size of each string's length, 4 for an int or 1 for an unsigned byte
+	 * @param minimum    smallest possible size of one string including its length
+	 */
+	@Nullable
+	private static Problem checkStrings(ChunkBounds chunk, int lengthSize, int minimum) throws IOException {
+		Problem problem = chunk.need(4, String.format("%s chunk is too small for its count", chunk.name));
+		if(problem != null) {
+			return problem;
+		}
+		long at = chunk.in.position;
+		int count = chunk.in.getInt();
+		if(count < 0 || (long) count * minimum > chunk.remaining()) {
+			return chunk.problem(at, Reason.INVALID_COUNT, String.format("Invalid %s count %d", chunk.name, count));
+		}
+		for(int i = 0; i < count; i++) {
+			problem = chunk.need(lengthSize, String.format("String %d is past the end of the %s chunk", i, chunk.name));
+			if(problem != null) {
+				return problem;
+			}
+			at = chunk.in.position;
+			int size = lengthSize == 4 ? chunk.in.getInt() : chunk.in.get() & 0xff;
+			problem = skipString(chunk, at, size, String.format("String %d", i));
+			if(problem != null) {
+				return problem;
+			}
+		}
+		return null;
+	}
+	
+	@Nullable
+	private static Problem checkString(ChunkBounds chunk) throws IOException {
+		Problem problem = chunk.need(4, String.format("%s chunk is too small for its string size", chunk.name));
+		if(problem != null) {
+			return problem;
+		}
+		long at = chunk.in.position;
+		return skipString(chunk, at, chunk.in.getInt(), "String");
+	}
+	
+	/**
+	 * Skip a string whose size has just been read
+	 *
+	 * @param at offset of the string's size
+	 */
+	@Nullable
+	private static Problem skipString(ChunkBounds chunk, long at, int size, String what) throws IOException {
+		if(size < 0 || size > chunk.remaining()) {
+			return chunk.problem(at, Reason.INVALID_SIZE, String.format("%s of %s chunk has invalid size %d", what, chunk.name, size));
+		}
+		long start = chunk.in.position;
+		if(!chunk.in.skip(size)) {
+			return chunk.problem(start, Reason.TRUNCATED, String.format("File ended inside %s chunk", chunk.name));
+		}
+		return null;
+	}
+	
+	/**
+	 * What's wrong with an invalid file
+	 */
+	public enum Reason {
+		/**
+		 * The file doesn't start with the RECP signature
+		 */
+		INVALID_SIGNATURE,
+		/**
+		 * The file ends before its END chunk, or inside a chunk
+		 */
+		TRUNCATED,
+		/**
+		 * A chunk size, or a size inside a chunk, is negative or larger than the data it's in
+		 */
+		INVALID_SIZE,
+		/**
+		 * An item count inside a chunk can't fit in the chunk
+		 */
+		INVALID_COUNT,
+		/**
+		 * An ingredient amount has a zero denominator, or doesn't fit in a {@link Fraction}
+		 */
+		INVALID_AMOUNT,
+		/**
+		 * META isn't first, or a required chunk appears twice
+		 */
+		INVALID_ORDER,
+		/**
+		 * INGR or PROC doesn't appear before END
+		 */
+		MISSING_REQUIRED_CHUNK,
+		/**
+		 * A required chunk type this version doesn't understand
+		 */
+		UNKNOWN_REQUIRED_CHUNK,
+		/**
+		 * A compressed chunk wraps a type that can't be compressed, has an invalid uncompressed size or needs a
+		 * dictionary that isn't registered
+		 */
+		INVALID_COMPRESSION
+	}
+	
+	/**
+	 * The first problem found in a file
+	 */
+	public static class Problem {
+		/**
+		 * Offset from the start of the file of the chunk header, or the value inside a chunk, that's invalid
+		 */
+		public final long offset;
+		public final Reason reason;
+		public final String message;
+		
+		public Problem(long offset, Reason reason, String message) {
+			this.offset = offset;
+			this.reason = reason;
+			this.message = message;
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("%s at offset %d: %s", reason, offset, message);
+		}
+	}
+	
+	/**
+	 * Bounds of the chunk being checked
+	 */
+	private static final class ChunkBounds {
+		final Input in;
+		final long offset;
+		final long end;
+		final String name;
+		
+		ChunkBounds(Input in, long offset, int size, String name) {
+			this.in = in;
+			this.offset = offset;
+			this.end = offset + 8 + size;
+			this.name = name;
+		}
+		
+		long remaining() {
+			return end - in.position;
+		}
+		
+		/**
+		 * Make sure n more bytes are in the chunk and have been buffered
+		 *
+		 * @param message problem to report if the chunk is too small
+		 * @return null if the bytes are available
+		 */
+		@Nullable
+		Problem need(int n, String message) throws IOException {
+			if(remaining() < n) {
+				return problem(in.position, Reason.INVALID_SIZE, message);
+			}
+			if(!in.request(n)) {
+				return problem(in.position, Reason.TRUNCATED, String.format("File ended inside %s chunk", name));
+			}
+			return null;
+		}
+		
+		/**
+		 * @param offset offset of the invalid value, which has usually been read already
+		 */
+		Problem problem(long offset, Reason reason, String message) {
+			return new Problem(offset, reason, message);
+		}
+	}
+	
+	/**
+	 * Reads either straight from a buffer holding the whole file, or from a channel through a fixed buffer
+	 */
+	private static final class Input {
+		final ByteBuffer buffer;
+		@Nullable final ReadableByteChannel channel;
+		/**
+		 * Length of the file, or -1 if it's unknown
+		 */
+		final long length;
+		long position;
+		
+		Input(ByteBuffer buffer, @Nullable ReadableByteChannel channel, long length) {
+			this.buffer = buffer;
+			this.channel = channel;
+			this.length = length;
+		}
+		
+		/**
+		 * Make sure n bytes are buffered
+		 *
+		 * @return false if the input ends first
+		 */
+		boolean request(int n) throws IOException {
+			if(buffer.remaining() >= n) {
+				return true;
+			}
+			if(channel == null) {
+				return false;
+			}
+			buffer.compact();
+			while(buffer.position() < n) {
+				if(channel.read(buffer) < 0) {
+					buffer.flip();
+					return false;
+				}
+			}
+			buffer.flip();
+			return true;
+		}
+		
+		int getInt() {
+			position += 4;
+			return buffer.getInt();
+		}
+		
+		short getShort() {
+			position += 2;
+			return buffer.getShort();
+		}
+		
+		byte get() {
+			position += 1;
+			return buffer.get();
+		}
+		
+		void skipBuffered(int n) {
+			position += n;
+			buffer.position(buffer.position() + n);
+		}
+		
+		/**
+		 * Skip n bytes
+		 *
+		 * @return false if the input ends first
+		 */
+		boolean skip(long n) throws IOException {
+			int buffered = (int) Math.min(n, buffer.remaining());
+			skipBuffered(buffered);
+			n -= buffered;
+			if(n == 0) {
+				return true;
+			}
+			if(channel == null) {
+				return false;
+			}
+			
+			if(channel instanceof SeekableByteChannel s) {
+				if(s.position() + n > s.size()) {
+					return false;
+				}
+				s.position(s.position() + n);
+				position += n;
+				return true;
+			}
+			while(n > 0) {
+				buffer.clear().limit((int) Math.min(n, buffer.capacity()));
+				int read = channel.read(buffer);
+				if(read < 0) {
+					buffer.clear().limit(0);
+					return false;
+				}
+				position += read;
+				n -= read;
+			}
+			buffer.clear().limit(0);
+			return true;
+		}
+	}
+}
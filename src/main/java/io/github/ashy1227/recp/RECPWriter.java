@@ -0,0 +1,188 @@
+package io.github.ashy1227.recp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes a RECP file to a channel one chunk at a time, through a fixed-size buffer that is reused for every chunk.
+ * Chunk data can be written in pieces with {@link #beginChunk(int, int)} and {@link #write(ByteBuffer)}, so the whole
+ * file never has to be in memory at once.
+ */
+public class RECPWriter implements Closeable {
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+	
+	protected final WritableByteChannel channel;
+	protected final ByteBuffer buffer;
+	protected final BufferPool pool;
+	
+	/**
+	 * Bytes of the current chunk's data that have not been written yet
+	 */
+	private int remaining;
+	
+	private boolean started;
+	private boolean ended;
+	private boolean closed;
+	
+	/**
+	 * @param pool pool the buffer is borrowed from, and returned to on {@link #close()}
+	 */
+	public RECPWriter(WritableByteChannel channel, int bufferSize, BufferPool pool) {
+		if(bufferSize < 16) {
+			throw new IllegalArgumentException("Buffer size must be at least 16 bytes");
+		}
+		this.channel = channel;
+		this.pool = pool;
+		this.buffer = pool.acquire(bufferSize).clear();
+	}
+	
+	public RECPWriter(WritableByteChannel channel, int bufferSize) {
+		this(channel, bufferSize, BufferPool.getDefault());
+	}
+	
+	public RECPWriter(WritableByteChannel channel) {
+		this(channel, DEFAULT_BUFFER_SIZE);
+	}
+	
+	/**
+	 * Start a new chunk. Exactly {@code size} bytes of data must then be written with {@link #write(ByteBuffer)}.
+	 *
+	 * @param type chunk type, see {@link RECPFile.ChunkType}
+	 * @param size size of the chunk's data in bytes
+	 * @throws IllegalStateException if the previous chunk is incomplete, the END chunk has been written, or the first
+	 *                               chunk isn't META
+	 * @throws IOException if error occurs writing to the channel
+	 */
+	public void beginChunk(int type, int size) throws IOException {
+		if(remaining != 0) {
+			throw new IllegalStateException(String.format("Previous chunk is missing %d bytes", remaining));
+		}
+		if(ended) {
+			throw new IllegalStateException("END chunk has already been written");
+		}
+		if(size < 0) {
+			throw new IllegalArgumentException(String.format("Invalid chunk size %d", size));
+		}
+		
+		if(!started) {
+			if(type != RECPFile.ChunkType.META) {
+				throw new IllegalStateException("Invalid chunk ordering; META chunk must appear first");
+			}
+			buffer.putInt(RECPFile.SIGNATURE);
+			started = true;
+		}
+		
+		if(buffer.remaining() < 8) {
+			flush();
+		}
+		buffer.putInt(size);
+		buffer.putInt(type);
+		remaining = size;
+		
+		RECPListener l = RECPListener.get();
+		if(l != null) {
+			l.chunkWritten(type, size);
+		}
+		
+		if(type == RECPFile.ChunkType.END) {
+			ended = true;
+		}
+	}
+	
+	/**
+	 * Write data to the current chunk
+	 *
+	 * @throws IllegalStateException if src holds more data than is left in the current chunk
+	 * @throws IOException if error occurs writing to the channel
+	 */
+	public void write(ByteBuffer src) throws IOException {
+		if(src.remaining() > remaining) {
+			throw new IllegalStateException(String.format("Chunk data exceeds declared size by %d bytes", src.remaining() - remaining));
+		}
+		remaining -= src.remaining();
+		
+		if(src.remaining() > buffer.remaining()) {
+			flush();
+			// Too big to be worth copying, send it straight to the channel
+			if(src.remaining() >= buffer.capacity()) {
+				while(src.hasRemaining()) {
+					channel.write(src);
+				}
+				return;
+			}
+		}
+		buffer.put(src);
+	}
+	
+	/**
+	 * Write a whole chunk
+	 *
+	 * @throws IOException if error occurs writing to the channel
+	 */
+	public void writeChunk(RECPFile.Chunk chunk) throws IOException {
+		beginChunk(chunk.type, chunk.data.remaining());
+		write(chunk.data.duplicate());
+	}
+	
+	/**
+	 * Write every chunk of a file
+	 *
+	 * @throws IOException if error occurs writing to the channel
+	 */
+	public void writeFile(RECPFile file) throws IOException {
+		for(RECPFile.Chunk c : file.chunks) {
+			writeChunk(c);
+		}
+	}
+	
+	/**
+	 * Write the END chunk if it hasn't been written yet, and flush everything to the channel
+	 *
+	 * @throws IOException if error occurs writing to the channel
+	 */
+	public void finish() throws IOException {
+		if(!ended) {
+			beginChunk(RECPFile.ChunkType.END, 0);
+		}
+		flush();
+	}
+	
+	/**
+	 * Send buffered data to the channel
+	 *
+	 * @throws IOException if error occurs writing to the channel
+	 */
+	public void flush() throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+	
+	/**
+	 * Finish the file, close the channel and return the buffer to its pool. If nothing was written, or a chunk is
+	 * incomplete, e.g. because writing it threw, the file isn't finished and whatever is still buffered is dropped, so
+	 * closing in a try-with-resources doesn't hide the original exception.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		try {
+			if(started && remaining == 0) {
+				finish();
+			}
+		} finally {
+			try {
+				channel.close();
+			} finally {
+				pool.release(buffer);
+			}
+		}
+	}
+}
@@ -4,17 +4,30 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 /**
  * A recipe that can be decoded from or encoded into a RECP file
  */
 public class Recipe {
+	private static final int SCRATCH_SIZE = 4096;
+	private static final ThreadLocal<byte[]> scratch = ThreadLocal.withInitial(() -> new byte[SCRATCH_SIZE]);
+	
 	@NotNull public List<Ingredient> ingredients;
 	@NotNull public List<String> procedure;
 	
@@ -45,95 +58,157 @@ public class Recipe {
 	 * Decode a RECPFile into a Recipe
 	 */
 	public Recipe(@NotNull RECPFile file) {
-		Charset charSet = StandardCharsets.ISO_8859_1;
-		
-		for(RECPFile.Chunk c : file.chunks) {
-			ByteBuffer b = ByteBuffer.wrap(c.data);
+		this(file, Part.ALL, null);
+	}
+	
+	/**
+	 * Decode only some parts of a RECPFile. Chunks for the other parts are skipped without being copied, decoded or
+	 * decompressed.
+	 *
+	 * @param pool pool for ingredient names and tags, or null to decode every string
+	 */
+	protected Recipe(@NotNull RECPFile file, @NotNull Set<Part> parts, @Nullable StringPool pool) {
+		this();
+		new RecipeDecoder(pool) {
+			@Override
+			void ingredients(int count) {
+				Recipe.this.ingredients = new ArrayList<>(count);
+			}
 			
-			switch(c.type) {
-				case RECPFile.ChunkType.META -> {
-					long cs = b.getLong();
-					
-					if(cs == RECPFile.TextEncoding.UTF_8) {
-						charSet = StandardCharsets.UTF_8;
-					} else if(cs == RECPFile.TextEncoding.UTF_16) {
-						charSet = StandardCharsets.UTF_16;
-					} else if(cs == RECPFile.TextEncoding.ISO_8859) {
-						charSet = StandardCharsets.ISO_8859_1;
-					} else if(cs == RECPFile.TextEncoding.ASCII) {
-						charSet = StandardCharsets.US_ASCII;
-					}
-				}
-				case RECPFile.ChunkType.INGR -> {
-					int length = b.getInt();
-					this.ingredients = new ArrayList<>(length);
-					
-					for(int i = 0; i < length; i++) {
-						byte unit = b.get();
-						short numerator = b.getShort();
-						short denominator = b.getShort();
-						
-						int size = b.getInt();
-						
-						byte[] str = new byte[size];
-						b.get(str);
-						
-						this.ingredients.add(new Ingredient(
-							Unit.get(unit),
-							new Fraction(numerator, denominator),
-							new String(str, charSet)
-						));
-					}
-				}
-				case RECPFile.ChunkType.PROC -> {
-					int length = b.getInt();
-					this.procedure = new ArrayList<>(length);
-					
-					for(int i = 0; i < length; i++) {
-						int size = b.getInt();
-						
-						byte[] str = new byte[size];
-						b.get(str);
-						
-						this.procedure.add(new String(str, charSet));
-					}
-				}
-				case RECPFile.ChunkType.titl -> {
-					int size = b.getInt();
-					byte[] str = new byte[size];
-					b.get(str);
-					this.title = new String(str, charSet);
-				}
-				case RECPFile.ChunkType.desc -> {
-					int size = b.getInt();
-					byte[] str = new byte[size];
-					b.get(str);
-					this.description = new String(str, charSet);
-				}
-				case RECPFile.ChunkType.ldsc -> {
-					int size = b.getInt();
-					byte[] str = new byte[size];
-					b.get(str);
-					this.longDescription = new String(str, charSet);
-				}
-				case RECPFile.ChunkType.tags -> {
-					int length = b.getInt();
-					this.tags = new ArrayList<>(length);
-					
-					for(int i = 0; i < length; i++) {
-						byte size = b.get();
-						
-						byte[] str = new byte[size];
-						b.get(str);
-						
-						this.tags.add(new String(str, charSet));
-					}
-				}
-				default -> {
-				
+			@Override
+			void ingredient(int i, byte unit, Fraction amount, String name) {
+				Recipe.this.ingredients.add(new Ingredient(Unit.get(unit), amount, name));
+			}
+			
+			@Override
+			void procedure(int count) {
+				Recipe.this.procedure = new ArrayList<>(count);
+			}
+			
+			@Override
+			void step(int i, String step) {
+				Recipe.this.procedure.add(step);
+			}
+			
+			@Override
+			void tags(int count) {
+				Recipe.this.tags = new ArrayList<>(count);
+			}
+			
+			@Override
+			void tag(int i, String tag) {
+				Recipe.this.tags.add(tag);
+			}
+			
+			@Override
+			void text(Part part, String text) {
+				switch(part) {
+					case TITLE -> Recipe.this.title = text;
+					case DESCRIPTION -> Recipe.this.description = text;
+					case LONG_DESCRIPTION -> Recipe.this.longDescription = text;
+					default -> throw new IllegalStateException(part.toString());
 				}
 			}
+			
+			@Override
+			long estimateAllocated(int strings, long bytes) {
+				return Recipe.estimateAllocated(strings, Recipe.this.ingredients.size(), bytes);
+			}
+		}.decode(file, parts);
+	}
+	
+	/**
+	 * Rough heap cost of decoding: a String and its array per string, an Ingredient and Fraction per ingredient, and
+	 * the string bytes themselves
+	 */
+	static long estimateAllocated(int strings, int ingredients, long bytes) {
+		return 40L * strings + 40L * ingredients + bytes;
+	}
+	
+	/**
+	 * Decode only some parts of a RECPFile, e.g. {@code Recipe.decode(file, EnumSet.of(Part.TITLE, Part.TAGS))} for a
+	 * listing. Chunks for the other parts are skipped by their size without being copied or decoded. Parts that aren't
+	 * decoded are left null, or empty for ingredients and procedure.
+	 */
+	public static Recipe decode(@NotNull RECPFile file, @NotNull Set<Part> parts) {
+		return new Recipe(file, parts, null);
+	}
+	
+	/**
+	 * Decode some parts of a RECPFile, taking ingredient names and tags from a pool so that names repeated across
+	 * recipes share one String
+	 *
+	 * @see #decode(RECPFile, Set)
+	 */
+	public static Recipe decode(@NotNull RECPFile file, @NotNull Set<Part> parts, @NotNull StringPool pool) {
+		return new Recipe(file, parts, pool);
+	}
+	
+	/**
+	 * Decode the next size bytes of a buffer. Writable heap buffers, such as chunks read from a byte array, are decoded
+	 * in place; other buffers are copied through a per-thread scratch array rather than a new array per string.
+	 *
+	 * @throws BufferUnderflowException if size is negative or more than the buffer has left
+	 */
+	static String getString(ByteBuffer b, int size, Charset charSet) {
+		if(size < 0 || size > b.remaining()) {
+			throw new BufferUnderflowException();
 		}
+		int p = b.position();
+		if(b.hasArray()) {
+			b.position(p + size);
+			return new String(b.array(), b.arrayOffset() + p, size, charSet);
+		}
+		
+		byte[] str = size <= SCRATCH_SIZE ? scratch.get() : new byte[size];
+		b.get(str, 0, size);
+		return new String(str, 0, size, charSet);
+	}
+	
+	/**
+	 * Get a copy of this recipe with every ingredient amount multiplied by a factor, e.g. 3/2 to go from 4 to 6
+	 * servings. This recipe isn't modified, so it can be scaled from several threads at once.
+	 *
+	 * @param normalizeUnits whether to move scaled amounts into larger units where possible, e.g. 48 teaspoons into 1
+	 *                       cup
+	 * @throws ArithmeticException if a scaled amount doesn't fit in a Fraction
+	 */
+	public Recipe scaled(Fraction factor, boolean normalizeUnits) {
+		List<Ingredient> scaled = new ArrayList<>(ingredients.size());
+		for(Ingredient ingredient : ingredients) {
+			scaled.add(ingredient.scaled(factor, normalizeUnits));
+		}
+		
+		return new Recipe(
+			scaled,
+			new ArrayList<>(procedure),
+			title,
+			description,
+			longDescription,
+			tags == null ? null : new ArrayList<>(tags)
+		);
+	}
+	
+	/**
+	 * Get a copy of this recipe with every ingredient amount multiplied by a factor. This recipe isn't modified.
+	 *
+	 * @throws ArithmeticException if a scaled amount doesn't fit in a Fraction
+	 */
+	public Recipe scaled(Fraction factor) {
+		return scaled(factor, false);
+	}
+	
+	/**
+	 * Scale many recipes by the same factor, in parallel. The source recipes aren't modified.
+	 *
+	 * @return the scaled recipes, in the same order
+	 * @throws ArithmeticException if a scaled amount doesn't fit in a Fraction
+	 * @see #scaled(Fraction, boolean)
+	 */
+	public static List<Recipe> scaleAll(Collection<Recipe> recipes, Fraction factor, boolean normalizeUnits) {
+		return recipes.parallelStream()
+			.map(recipe -> recipe.scaled(factor, normalizeUnits))
+			.collect(Collectors.toList());
 	}
 	
 	/**
@@ -144,7 +219,25 @@ public class Recipe {
 	 * @throws IOException if error occurs writing file
 	 */
 	public void writeToPath(Path path, Charset charSet) throws IOException {
-		new RECPFile(this, charSet).writeToPath(path);
+		BufferPool pool = BufferPool.getDefault();
+		ByteBuffer b = new RECPEncoder(charSet).encode(this, pool);
+		RECPListener l = RECPListener.get();
+		long start = l == null ? 0 : System.nanoTime();
+		int size = b.remaining();
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer file = b.duplicate();
+			while(b.hasRemaining()) {
+				channel.write(b);
+			}
+			if(l != null) {
+				RECPEncoder.chunksWritten(l, file);
+			}
+		} finally {
+			pool.release(b);
+		}
+		if(l != null) {
+			l.phase(RECPListener.Phase.WRITE, System.nanoTime() - start, size, 0);
+		}
 	}
 	
 	/**
@@ -157,6 +250,50 @@ public class Recipe {
 		this.writeToPath(path, StandardCharsets.UTF_8);
 	}
 	
+	/**
+	 * Write to RECP file on disk without blocking. The file is encoded on the calling thread and written in the
+	 * background.
+	 *
+	 * @param path    path to the file to be written
+	 * @param charSet character encoding to be used for strings
+	 * @return a future completed when the file has been written, or completed exceptionally with the IOException
+	 * @throws IllegalArgumentException if charSet isn't a valid RECP character encoding
+	 */
+	public CompletableFuture<Void> writeAsync(Path path, Charset charSet) {
+		return AsyncIO.write(path, this, charSet);
+	}
+	
+	/**
+	 * Read a Recipe object from a memory-mapped file, without copying the file into memory first
+	 *
+	 * @throws IOException if error occurs mapping the file
+	 * @see RECPFile#mapFromPath(Path)
+	 */
+	public static Recipe mapFromPath(Path path) throws IOException {
+		return new Recipe(RECPFile.mapFromPath(path));
+	}
+	
+	/**
+	 * Read only some parts of a Recipe from a memory-mapped file. Pages holding only skipped chunks are never touched.
+	 *
+	 * @throws IOException if error occurs mapping the file
+	 * @see #decode(RECPFile, Set)
+	 */
+	public static Recipe mapFromPath(Path path, Set<Part> parts) throws IOException {
+		return new Recipe(RECPFile.mapFromPath(path), parts, null);
+	}
+	
+	/**
+	 * Read a Recipe object from a Path without blocking. The file is read in the background and decoded on the thread
+	 * that completes the read.
+	 *
+	 * @return a future completed with the Recipe, or completed exceptionally with the IOException or the invalid file's
+	 * IllegalArgumentException
+	 */
+	public static CompletableFuture<Recipe> readAsync(Path path) {
+		return AsyncIO.read(path, b -> new Recipe(RECPFile.fromByteBuffer(b)));
+	}
+	
 	/**
 	 * Read a Recipe object from a Path
 	 *
@@ -170,4 +307,70 @@ public class Recipe {
 		}
 		return new Recipe(file);
 	}
+	
+	/**
+	 * Recipes are equal if every ingredient, step, tag and text field is equal, in the same order. Fields are public
+	 * and can change, so the hash isn't cached; use {@link ImmutableRecipe} or {@link RECPFile#fingerprint()} to
+	 * compare many times.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj) {
+			return true;
+		}
+		if(obj == null || this.getClass() != obj.getClass()) {
+			return false;
+		}
+		Recipe r = (Recipe) obj;
+		return ingredients.equals(r.ingredients)
+			   && procedure.equals(r.procedure)
+			   && Objects.equals(title, r.title)
+			   && Objects.equals(description, r.description)
+			   && Objects.equals(longDescription, r.longDescription)
+			   && Objects.equals(tags, r.tags);
+	}
+	
+	@Override
+	public int hashCode() {
+		return Objects.hash(ingredients, procedure, title, description, longDescription, tags);
+	}
+	
+	/**
+	 * Parts of a recipe that can be decoded separately, see {@link #decode(RECPFile, Set)}
+	 */
+	public enum Part {
+		TITLE(RECPFile.ChunkType.titl),
+		DESCRIPTION(RECPFile.ChunkType.desc),
+		LONG_DESCRIPTION(RECPFile.ChunkType.ldsc),
+		TAGS(RECPFile.ChunkType.tags),
+		INGREDIENTS(RECPFile.ChunkType.INGR),
+		PROCEDURE(RECPFile.ChunkType.PROC);
+		
+		static final Set<Part> ALL = Collections.unmodifiableSet(EnumSet.allOf(Part.class));
+		
+		/**
+		 * Type of the chunk this part is stored in
+		 */
+		public final int chunkType;
+		
+		Part(int chunkType) {
+			this.chunkType = chunkType;
+		}
+		
+		/**
+		 * The part stored in a type of chunk, or null if the chunk isn't part of the recipe's content
+		 */
+		@Nullable
+		public static Part of(int chunkType) {
+			return switch(chunkType) {
+				case RECPFile.ChunkType.titl -> TITLE;
+				case RECPFile.ChunkType.desc -> DESCRIPTION;
+				case RECPFile.ChunkType.ldsc -> LONG_DESCRIPTION;
+				case RECPFile.ChunkType.tags -> TAGS;
+				case RECPFile.ChunkType.INGR -> INGREDIENTS;
+				case RECPFile.ChunkType.PROC -> PROCEDURE;
+				default -> null;
+			};
+		}
+	}
 }
@@ -0,0 +1,407 @@
+package io.github.ashy1227.recp;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The ingredients of many recipes, stored column by column for analytics
+ * <p>
+ * Every ingredient of every recipe is a row: its unit ID, numerator and denominator are in parallel primitive arrays,
+ * and its name is an index into a dictionary of distinct names kept in one UTF-8 byte array. Recipe r owns rows
+ * {@link #recipeStart(int)} to {@link #recipeEnd(int)}. Batches are built straight from INGR chunk bytes without
+ * creating any Ingredient objects, and the bulk operations are plain loops over the arrays.
+ * <p>
+ * Amounts are stored with 32-bit numerators and denominators so that scaled batches have room to grow past the 16 bits
+ * of a {@link Fraction}.
+ */
+public final class RecipeBatch {
+	private final byte[] units;
+	private final int[] numerators;
+	private final int[] denominators;
+	private final int[] names;
+	private final int[] recipeStarts;
+	private final int recipes;
+	
+	/**
+	 * Name i is stored in {@code nameHeap[nameOffsets[i]]} to {@code nameHeap[nameOffsets[i + 1]]}
+	 */
+	private final byte[] nameHeap;
+	private final int[] nameOffsets;
+	private final int nameCount;
+	
+	private RecipeBatch(byte[] units, int[] numerators, int[] denominators, int[] names, int[] recipeStarts, int recipes, byte[] nameHeap, int[] nameOffsets, int nameCount) {
+		this.units = units;
+		this.numerators = numerators;
+		this.denominators = denominators;
+		this.names = names;
+		this.recipeStarts = recipeStarts;
+		this.recipes = recipes;
+		this.nameHeap = nameHeap;
+		this.nameOffsets = nameOffsets;
+		this.nameCount = nameCount;
+	}
+	
+	/**
+	 * Build a batch of every recipe in an archive, in archive order
+	 *
+	 * @throws IOException if error occurs reading the archive
+	 */
+	public static RecipeBatch of(RECPArchive archive) throws IOException {
+		Builder builder = new Builder();
+		for(int n = 0; n < archive.size(); n++) {
+			RECPFile.Chunk meta = archive.getChunk(n, RECPFile.ChunkType.META);
+			RECPFile.Chunk ingr = archive.getChunk(n, RECPFile.ChunkType.INGR);
+			Charset charSet = RECPFile.TextEncoding.toCharset(meta == null ? 0 : meta.data.getLong(meta.data.position()));
+			builder.add(ingr == null ? null : ingr.data, charSet);
+		}
+		return builder.build();
+	}
+	
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	public int recipeCount() {
+		return recipes;
+	}
+	
+	/**
+	 * Total number of ingredients in every recipe
+	 */
+	public int size() {
+		return recipeStarts[recipes];
+	}
+	
+	/**
+	 * First row of recipe r
+	 */
+	public int recipeStart(int r) {
+		return recipeStarts[r];
+	}
+	
+	/**
+	 * Row after the last row of recipe r
+	 */
+	public int recipeEnd(int r) {
+		return recipeStarts[r + 1];
+	}
+	
+	public Unit getUnit(int row) {
+		return Unit.get(units[row]);
+	}
+	
+	public int getNumerator(int row) {
+		return numerators[row];
+	}
+	
+	public int getDenominator(int row) {
+		return denominators[row];
+	}
+	
+	public WideFraction getAmount(int row) {
+		return WideFraction.of(numerators[row], denominators[row]);
+	}
+	
+	/**
+	 * Dictionary index of a row's name, equal for rows with the same name
+	 */
+	public int getNameId(int row) {
+		return names[row];
+	}
+	
+	public String getName(int row) {
+		return name(names[row]);
+	}
+	
+	/**
+	 * Number of distinct ingredient names
+	 */
+	public int nameCount() {
+		return nameCount;
+	}
+	
+	/**
+	 * A name from the dictionary, see {@link #getNameId(int)}
+	 */
+	public String name(int id) {
+		return new String(nameHeap, nameOffsets[id], nameOffsets[id + 1] - nameOffsets[id], StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Multiply every amount by a factor
+	 *
+	 * @return a new batch sharing this batch's units and names
+	 * @throws ArithmeticException if a scaled amount doesn't fit in 32 bits
+	 */
+	public RecipeBatch scaleAll(@NotNull Fraction factor) {
+		int rows = size();
+		int[] n = new int[rows];
+		int[] d = new int[rows];
+		long fn = factor.numerator;
+		long fd = factor.denominator;
+		
+		for(int i = 0; i < rows; i++) {
+			long num = numerators[i] * fn;
+			long den = denominators[i] * fd;
+			long g = Fraction.gcd(num, den);
+			n[i] = Math.toIntExact(num / g);
+			d[i] = Math.toIntExact(den / g);
+		}
+		return new RecipeBatch(units, n, d, names, recipeStarts, recipes, nameHeap, nameOffsets, nameCount);
+	}
+	
+	/**
+	 * Every amount converted to a unit
+	 *
+	 * @return one amount per row, NaN for rows whose unit can't be converted to the target
+	 */
+	public double[] amountsIn(@NotNull Unit target) {
+		double[] factors = factorsTo(target);
+		int rows = size();
+		double[] amounts = new double[rows];
+		for(int i = 0; i < rows; i++) {
+			amounts[i] = (double) numerators[i] / denominators[i] * factors[units[i] & 0xff];
+		}
+		return amounts;
+	}
+	
+	/**
+	 * Total amount of each ingredient across every recipe, converted to a unit. Rows whose unit can't be converted to
+	 * the target are left out.
+	 *
+	 * @return totals by ingredient name, in order of first appearance
+	 */
+	public Map<String, Double> sumByIngredient(@NotNull Unit target) {
+		double[] factors = factorsTo(target);
+		double[] sums = new double[nameCount];
+		boolean[] present = new boolean[nameCount];
+		int rows = size();
+		for(int i = 0; i < rows; i++) {
+			double f = factors[units[i] & 0xff];
+			if(!Double.isNaN(f)) {
+				sums[names[i]] += (double) numerators[i] / denominators[i] * f;
+				present[names[i]] = true;
+			}
+		}
+		
+		Map<String, Double> totals = new LinkedHashMap<>();
+		for(int id = 0; id < nameCount; id++) {
+			if(present[id]) {
+				totals.put(name(id), sums[id]);
+			}
+		}
+		return totals;
+	}
+	
+	/**
+	 * Conversion factor to the target from every unit ID, NaN where there is none
+	 */
+	private static double[] factorsTo(Unit target) {
+		double[] factors = new double[256];
+		for(int id = 0; id < 256; id++) {
+			Unit unit = Unit.get((byte) id);
+			factors[id] = UnitConversion.canConvert(unit, target) ? UnitConversion.factor(unit, target) : Double.NaN;
+		}
+		return factors;
+	}
+	
+	/**
+	 * Builds a RecipeBatch one recipe at a time
+	 */
+	public static final class Builder {
+		private byte[] units = new byte[64];
+		private int[] numerators = new int[64];
+		private int[] denominators = new int[64];
+		private int[] names = new int[64];
+		private int rows;
+		
+		private int[] recipeStarts = new int[16];
+		private int recipes;
+		
+		/**
+		 * Open-addressed hash table of name IDs plus 1, 0 for an empty slot, keyed on the names' UTF-8 bytes
+		 */
+		private int[] table = new int[128];
+		private int[] nameHashes = new int[64];
+		private int nameCount;
+		private byte[] nameHeap = new byte[1024];
+		private int[] nameOffsets = new int[64];
+		private int heapSize;
+		
+		private Builder() {}
+		
+		/**
+		 * Add the ingredients of a recipe
+		 *
+		 * @return the recipe's index in the batch
+		 */
+		public int add(@NotNull RECPFile file) {
+			RECPFile.Chunk meta = file.getChunk(RECPFile.ChunkType.META);
+			RECPFile.Chunk ingr = file.getChunk(RECPFile.ChunkType.INGR);
+			Charset charSet = RECPFile.TextEncoding.toCharset(meta == null ? 0 : meta.data.getLong(meta.data.position()));
+			return add(ingr == null ? null : ingr.data, charSet);
+		}
+		
+		/**
+		 * Add the ingredients of a recipe from the data of its INGR chunk. If the chunk is invalid, the exception from
+		 * parsing it is thrown and the builder is left as it was.
+		 *
+		 * @param ingr INGR chunk data, or null for a recipe without ingredients
+		 * @return the recipe's index in the batch
+		 */
+		public int add(@Nullable ByteBuffer ingr, Charset charSet) {
+			if(ingr != null) {
+				int rowMark = rows;
+				int nameMark = nameCount;
+				int heapMark = heapSize;
+				try {
+					addRows(ingr.duplicate(), charSet);
+				} catch(RuntimeException e) {
+					// Otherwise the rows parsed so far would be counted as part of the next recipe
+					rows = rowMark;
+					if(nameCount != nameMark) {
+						nameCount = nameMark;
+						heapSize = heapMark;
+						rebuildTable(table.length);
+					}
+					throw e;
+				}
+			}
+			
+			if(recipes + 2 > recipeStarts.length) {
+				recipeStarts = Arrays.copyOf(recipeStarts, recipeStarts.length * 2);
+			}
+			recipeStarts[++recipes] = rows;
+			return recipes - 1;
+		}
+		
+		public RecipeBatch build() {
+			int names = nameCount;
+			return new RecipeBatch(
+				Arrays.copyOf(units, rows),
+				Arrays.copyOf(numerators, rows),
+				Arrays.copyOf(denominators, rows),
+				Arrays.copyOf(this.names, rows),
+				Arrays.copyOf(recipeStarts, recipes + 1),
+				recipes,
+				Arrays.copyOf(nameHeap, heapSize),
+				Arrays.copyOf(nameOffsets, names + 1),
+				names
+			);
+		}
+		
+		private void addRows(ByteBuffer b, Charset charSet) {
+			int length = b.getInt();
+			for(int i = 0; i < length; i++) {
+				byte unit = b.get();
+				Fraction amount = Fraction.of(b.getShort(), b.getShort());
+				int size = b.getInt();
+				int name;
+				if(charSet.equals(StandardCharsets.UTF_8)) {
+					// Already the heap's encoding, so look the bytes up where they are
+					if(size < 0 || size > b.remaining()) {
+						throw new BufferUnderflowException();
+					}
+					name = nameId(b, b.position(), size);
+					b.position(b.position() + size);
+				} else {
+					byte[] utf8 = Recipe.getString(b, size, charSet).getBytes(StandardCharsets.UTF_8);
+					name = nameId(ByteBuffer.wrap(utf8), 0, utf8.length);
+				}
+				addRow(unit, amount.numerator, amount.denominator, name);
+			}
+		}
+		
+		private void addRow(byte unit, int numerator, int denominator, int name) {
+			if(rows == units.length) {
+				int capacity = rows * 2;
+				units = Arrays.copyOf(units, capacity);
+				numerators = Arrays.copyOf(numerators, capacity);
+				denominators = Arrays.copyOf(denominators, capacity);
+				names = Arrays.copyOf(names, capacity);
+			}
+			units[rows] = unit;
+			numerators[rows] = numerator;
+			denominators[rows] = denominator;
+			names[rows] = name;
+			rows++;
+		}
+		
+		/**
+		 * ID of the UTF-8 name in src from position p to p + size, adding it to the dictionary if it's new
+		 */
+		private int nameId(ByteBuffer src, int p, int size) {
+			int hash = 0;
+			for(int i = 0; i < size; i++) {
+				hash = 31 * hash + src.get(p + i);
+			}
+			
+			int mask = table.length - 1;
+			int slot = hash & mask;
+			for(int id; (id = table[slot] - 1) >= 0; slot = (slot + 1) & mask) {
+				if(nameHashes[id] == hash && nameEquals(id, src, p, size)) {
+					return id;
+				}
+			}
+			
+			if(heapSize + size > nameHeap.length) {
+				nameHeap = Arrays.copyOf(nameHeap, Math.max(nameHeap.length * 2, heapSize + size));
+			}
+			src.get(p, nameHeap, heapSize, size);
+			heapSize += size;
+			
+			int n = nameCount++;
+			if(n + 2 > nameOffsets.length) {
+				nameOffsets = Arrays.copyOf(nameOffsets, nameOffsets.length * 2);
+				nameHashes = Arrays.copyOf(nameHashes, nameOffsets.length);
+			}
+			nameOffsets[n + 1] = heapSize;
+			nameHashes[n] = hash;
+			table[slot] = n + 1;
+			if(nameCount * 2 > table.length) {
+				// Keep the table at most half full
+				rebuildTable(table.length * 2);
+			}
+			return n;
+		}
+		
+		private boolean nameEquals(int id, ByteBuffer src, int p, int size) {
+			int start = nameOffsets[id];
+			if(nameOffsets[id + 1] - start != size) {
+				return false;
+			}
+			for(int i = 0; i < size; i++) {
+				if(nameHeap[start + i] != src.get(p + i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		/**
+		 * Rebuild the table from the names in the dictionary
+		 *
+		 * @param capacity power of two
+		 */
+		private void rebuildTable(int capacity) {
+			table = new int[capacity];
+			int mask = capacity - 1;
+			for(int id = 0; id < nameCount; id++) {
+				int slot = nameHashes[id] & mask;
+				while(table[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				table[slot] = id + 1;
+			}
+		}
+	}
+}
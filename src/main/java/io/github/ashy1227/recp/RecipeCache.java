@@ -0,0 +1,230 @@
+package io.github.ashy1227.recp;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of decoded recipes, keyed by path
+ * <p>
+ * Entries are checked against the file's modification time and size on every lookup, and reloaded if the file has
+ * changed. The cache is bounded by the total size of the cached files and evicts the least recently used entries
+ * first. Threads that ask for the same path while it is loading wait for that one load instead of starting their
+ * own.
+ * <p>
+ * Recipes are cached as {@link ImmutableRecipe}s, so the same instance can be handed to every caller.
+ */
+public class RecipeCache {
+	private final long maxWeight;
+	
+	/**
+	 * Cached entries in access order, guarded by itself
+	 */
+	private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long weight;
+	
+	private final Map<Path, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+	
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder loads = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	
+	/**
+	 * @param maxWeight total size in bytes of the files whose recipes can be cached at once
+	 */
+	public RecipeCache(long maxWeight) {
+		if(maxWeight <= 0) {
+			throw new IllegalArgumentException(String.format("Invalid maximum weight %d", maxWeight));
+		}
+		this.maxWeight = maxWeight;
+	}
+	
+	/**
+	 * Get a recipe, reading it from disk if it isn't cached or the file has changed since it was cached
+	 *
+	 * @throws IOException if error occurs reading the file
+	 * @throws IllegalArgumentException if the file is invalid
+	 */
+	public ImmutableRecipe get(Path path) throws IOException {
+		Path key = path.toAbsolutePath().normalize();
+		BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+		
+		synchronized(entries) {
+			Entry e = entries.get(key);
+			if(e != null && e.isCurrent(attributes)) {
+				hits.increment();
+				return e.recipe;
+			}
+		}
+		misses.increment();
+		
+		CompletableFuture<Entry> future = new CompletableFuture<>();
+		CompletableFuture<Entry> existing = loading.putIfAbsent(key, future);
+		if(existing != null) {
+			return await(existing).recipe;
+		}
+		
+		try {
+			// Another load may have finished between the lookup above and claiming this one
+			Entry e;
+			synchronized(entries) {
+				e = entries.get(key);
+			}
+			if(e == null || !e.isCurrent(attributes)) {
+				e = load(key, attributes);
+			}
+			put(key, e);
+			future.complete(e);
+			return e.recipe;
+		} catch(IOException | RuntimeException e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			loading.remove(key, future);
+		}
+	}
+	
+	/**
+	 * Remove a path from the cache
+	 */
+	public void invalidate(Path path) {
+		Path key = path.toAbsolutePath().normalize();
+		synchronized(entries) {
+			Entry e = entries.remove(key);
+			if(e != null) {
+				weight -= e.size;
+			}
+		}
+	}
+	
+	/**
+	 * Remove everything from the cache. Statistics aren't reset.
+	 */
+	public void clear() {
+		synchronized(entries) {
+			entries.clear();
+			weight = 0;
+		}
+	}
+	
+	/**
+	 * Number of cached recipes
+	 */
+	public int size() {
+		synchronized(entries) {
+			return entries.size();
+		}
+	}
+	
+	/**
+	 * Total size in bytes of the files whose recipes are cached
+	 */
+	public long getWeight() {
+		synchronized(entries) {
+			return weight;
+		}
+	}
+	
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+	
+	/**
+	 * Number of lookups answered from the cache
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+	
+	/**
+	 * Number of lookups that weren't cached or whose file had changed
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+	
+	/**
+	 * Number of files read from disk. Lower than {@link #getMisses()} when concurrent misses share a load.
+	 */
+	public long getLoads() {
+		return loads.sum();
+	}
+	
+	/**
+	 * Number of entries removed to make room for others
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+	
+	private Entry load(Path path, BasicFileAttributes attributes) throws IOException {
+		loads.increment();
+		ImmutableRecipe recipe = ImmutableRecipe.decode(RECPFile.fromByteArray(RECPFile.readAllBytes(path)));
+		return new Entry(recipe, attributes.lastModifiedTime(), attributes.size());
+	}
+	
+	private void put(Path key, Entry e) {
+		if(e.size > maxWeight) {
+			// Too big to ever fit, don't flush everything else for it
+			return;
+		}
+		synchronized(entries) {
+			Entry old = entries.put(key, e);
+			if(old != null) {
+				weight -= old.size;
+			}
+			weight += e.size;
+			
+			Iterator<Entry> it = entries.values().iterator();
+			while(weight > maxWeight && it.hasNext()) {
+				Entry eldest = it.next();
+				if(eldest == e) {
+					continue;
+				}
+				it.remove();
+				weight -= eldest.size;
+				evictions.increment();
+			}
+		}
+	}
+	
+	private static Entry await(CompletableFuture<Entry> future) throws IOException {
+		try {
+			return future.join();
+		} catch(CompletionException e) {
+			if(e.getCause() instanceof IOException io) {
+				throw io;
+			}
+			if(e.getCause() instanceof RuntimeException re) {
+				throw re;
+			}
+			throw e;
+		}
+	}
+	
+	private static final class Entry {
+		final ImmutableRecipe recipe;
+		final FileTime modified;
+		final long size;
+		
+		Entry(ImmutableRecipe recipe, FileTime modified, long size) {
+			this.recipe = recipe;
+			this.modified = modified;
+			this.size = size;
+		}
+		
+		boolean isCurrent(BasicFileAttributes attributes) {
+			return size == attributes.size() && modified.equals(attributes.lastModifiedTime());
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package io.github.ashy1227.recp;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads every RECP file in a directory in parallel. Each file is read and decoded independently, and a file that
+ * can't be read doesn't stop the others; its error is reported in its {@link Entry} instead.
+ */
+public class RecipeCorpus {
+	/**
+	 * File extension of RECP files
+	 */
+	public static final String EXTENSION = ".recp";
+	
+	/**
+	 * List the RECP files directly inside a directory
+	 *
+	 * @throws IOException if error occurs listing the directory
+	 */
+	public static List<Path> list(Path dir) throws IOException {
+		try(Stream<Path> files = Files.list(dir)) {
+			return files
+				.filter(p -> p.getFileName().toString().endsWith(EXTENSION) && Files.isRegularFile(p))
+				.sorted()
+				.collect(Collectors.toList());
+		}
+	}
+	
+	/**
+	 * Read a single file, capturing any error instead of throwing it
+	 */
+	public static Entry read(Path path) {
+		try {
+			return new Entry(path, new Recipe(RECPFile.fromByteArray(Files.readAllBytes(path))), null);
+		} catch(IOException | RuntimeException e) {
+			return new Entry(path, null, e);
+		}
+	}
+	
+	/**
+	 * Read every RECP file in a directory as a parallel stream, on the common fork/join pool
+	 *
+	 * @throws IOException if error occurs listing the directory
+	 */
+	public static Stream<Entry> stream(Path dir) throws IOException {
+		return list(dir).parallelStream().map(RecipeCorpus::read);
+	}
+	
+	/**
+	 * Read every RECP file in a directory using an executor
+	 *
+	 * @return one entry per file, in path order
+	 * @throws IOException if error occurs listing the directory
+	 * @throws InterruptedException if interrupted while waiting for the files to be read
+	 */
+	public static List<Entry> readAll(Path dir, ExecutorService executor) throws IOException, InterruptedException {
+		List<Path> paths = list(dir);
+		
+		List<Future<Entry>> futures = new ArrayList<>(paths.size());
+		for(Path path : paths) {
+			futures.add(executor.submit(() -> read(path)));
+		}
+		
+		List<Entry> entries = new ArrayList<>(paths.size());
+		for(Future<Entry> future : futures) {
+			try {
+				entries.add(future.get());
+			} catch(ExecutionException e) {
+				// read() doesn't throw, so this is an Error
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		return entries;
+	}
+	
+	/**
+	 * Read every RECP file in a directory using a temporary work-stealing pool
+	 *
+	 * @return one entry per file, in path order
+	 * @throws IOException if error occurs listing the directory
+	 * @throws InterruptedException if interrupted while waiting for the files to be read
+	 */
+	public static List<Entry> readAll(Path dir) throws IOException, InterruptedException {
+		ExecutorService executor = Executors.newWorkStealingPool();
+		try {
+			return readAll(dir, executor);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * The result of reading one file: either a Recipe or the error that prevented reading it
+	 */
+	public static class Entry {
+		public final Path path;
+		@Nullable public final Recipe recipe;
+		@Nullable public final Exception error;
+		
+		public Entry(Path path, @Nullable Recipe recipe, @Nullable Exception error) {
+			this.path = path;
+			this.recipe = recipe;
+			this.error = error;
+		}
+		
+		public boolean isSuccess() {
+			return error == null;
+		}
+		
+		@Override
+		public String toString() {
+			return isSuccess() ? path.toString() : path + ": " + error;
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package io.github.ashy1227.recp;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Parses the content chunks of a RECPFile and hands each ingredient, step, tag and text field to a subclass, which
+ * stores them in whatever layout it likes. Shared by {@link Recipe} and {@link ImmutableRecipe}.
+ */
+abstract class RecipeDecoder {
+	@Nullable private final StringPool pool;
+	
+	/**
+	 * @param pool pool for ingredient names and tags, or null to decode every string
+	 */
+	RecipeDecoder(@Nullable StringPool pool) {
+		this.pool = pool;
+	}
+	
+	/**
+	 * Decode the chunks for some parts of a file. Chunks for the other parts are skipped without being copied, decoded
+	 * or decompressed.
+	 */
+	final void decode(@NotNull RECPFile file, @NotNull Set<Recipe.Part> parts) {
+		RECPListener l = RECPListener.get();
+		long start = l == null ? 0 : System.nanoTime();
+		Charset charSet = StandardCharsets.ISO_8859_1;
+		int strings = 0;
+		long bytes = 0;
+		
+		for(RECPFile.Chunk c : file.chunks) {
+			int type = c.getContentType();
+			Recipe.Part part = Recipe.Part.of(type);
+			if(type == RECPFile.ChunkType.META) {
+				charSet = RECPFile.TextEncoding.toCharset(c.data.getLong(c.data.position()));
+			} else if(part != null && parts.contains(part)) {
+				ByteBuffer b = c.decompressed().data.duplicate();
+				bytes += b.remaining();
+				strings += decodeChunk(part, b, charSet);
+			}
+		}
+		
+		if(l != null) {
+			l.stringsDecoded(strings, bytes);
+			l.phase(RECPListener.Phase.DECODE, System.nanoTime() - start, bytes, estimateAllocated(strings, bytes));
+		}
+	}
+	
+	/**
+	 * @return number of strings decoded
+	 */
+	private int decodeChunk(Recipe.Part part, ByteBuffer b, Charset charSet) {
+		switch(part) {
+			case INGREDIENTS -> {
+				int length = b.getInt();
+				ingredients(length);
+				for(int i = 0; i < length; i++) {
+					byte unit = b.get();
+					short numerator = b.getShort();
+					short denominator = b.getShort();
+					int size = b.getInt();
+					ingredient(i, unit, Fraction.of(numerator, denominator), pooled(b, size, charSet));
+				}
+				return length;
+			}
+			case PROCEDURE -> {
+				int length = b.getInt();
+				procedure(length);
+				for(int i = 0; i < length; i++) {
+					step(i, Recipe.getString(b, b.getInt(), charSet));
+				}
+				return length;
+			}
+			case TAGS -> {
+				int length = b.getInt();
+				tags(length);
+				for(int i = 0; i < length; i++) {
+					tag(i, pooled(b, b.get() & 0xff, charSet));
+				}
+				return length;
+			}
+			default -> {
+				text(part, Recipe.getString(b, b.getInt(), charSet));
+				return 1;
+			}
+		}
+	}
+	
+	private String pooled(ByteBuffer b, int size, Charset charSet) {
+		return pool == null ? Recipe.getString(b, size, charSet) : pool.get(b, size, charSet);
+	}
+	
+	/**
+	 * Called before the ingredients with how many there are
+	 */
+	abstract void ingredients(int count);
+	
+	abstract void ingredient(int i, byte unit, Fraction amount, String name);
+	
+	/**
+	 * Called before the steps with how many there are
+	 */
+	abstract void procedure(int count);
+	
+	abstract void step(int i, String step);
+	
+	/**
+	 * Called before the tags with how many there are
+	 */
+	abstract void tags(int count);
+	
+	abstract void tag(int i, String tag);
+	
+	/**
+	 * Title, description or long description
+	 */
+	abstract void text(Recipe.Part part, String text);
+	
+	/**
+	 * Rough heap cost of what was decoded, reported to the {@link RECPListener}
+	 */
+	abstract long estimateAllocated(int strings, long bytes);
+}
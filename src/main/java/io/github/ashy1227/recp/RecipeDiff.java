@@ -0,0 +1,288 @@
+package io.github.ashy1227.recp;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * What changed between two versions of a recipe
+ * <p>
+ * Ingredients are matched by name, so an ingredient whose amount or unit changed is one {@link Kind#CHANGED change}
+ * rather than a removal and an addition. Steps are matched by their longest common subsequence, and a step that was
+ * removed right where another was added counts as changed, i.e. reworded.
+ */
+public final class RecipeDiff {
+	public enum Kind {
+		ADDED,
+		REMOVED,
+		CHANGED
+	}
+	
+	/**
+	 * One added, removed or changed ingredient or step
+	 *
+	 * @param <T> Ingredient or String
+	 */
+	public static final class Change<T> {
+		public final Kind kind;
+		/**
+		 * Index in the old recipe, or -1 if added
+		 */
+		public final int beforeIndex;
+		/**
+		 * Index in the new recipe, or -1 if removed
+		 */
+		public final int afterIndex;
+		@Nullable public final T before;
+		@Nullable public final T after;
+		
+		Change(Kind kind, int beforeIndex, int afterIndex, @Nullable T before, @Nullable T after) {
+			this.kind = kind;
+			this.beforeIndex = beforeIndex;
+			this.afterIndex = afterIndex;
+			this.before = before;
+			this.after = after;
+		}
+		
+		@Override
+		public String toString() {
+			return switch(kind) {
+				case ADDED -> String.format("+ %s", after);
+				case REMOVED -> String.format("- %s", before);
+				case CHANGED -> String.format("~ %s -> %s", before, after);
+			};
+		}
+	}
+	
+	private final List<Change<Ingredient>> ingredients;
+	private final List<Change<String>> procedure;
+	private final List<String> addedTags;
+	private final List<String> removedTags;
+	private final boolean titleChanged;
+	private final boolean descriptionChanged;
+	private final boolean longDescriptionChanged;
+	
+	private RecipeDiff(List<Change<Ingredient>> ingredients, List<Change<String>> procedure, List<String> addedTags, List<String> removedTags, boolean titleChanged, boolean descriptionChanged, boolean longDescriptionChanged) {
+		this.ingredients = Collections.unmodifiableList(ingredients);
+		this.procedure = Collections.unmodifiableList(procedure);
+		this.addedTags = Collections.unmodifiableList(addedTags);
+		this.removedTags = Collections.unmodifiableList(removedTags);
+		this.titleChanged = titleChanged;
+		this.descriptionChanged = descriptionChanged;
+		this.longDescriptionChanged = longDescriptionChanged;
+	}
+	
+	/**
+	 * Compare two versions of a recipe
+	 */
+	public static RecipeDiff of(@NotNull Recipe before, @NotNull Recipe after) {
+		return new RecipeDiff(
+			diffIngredients(before.ingredients, after.ingredients),
+			diffProcedure(before.procedure, after.procedure),
+			missing(after.tags, before.tags),
+			missing(before.tags, after.tags),
+			!Objects.equals(before.title, after.title),
+			!Objects.equals(before.description, after.description),
+			!Objects.equals(before.longDescription, after.longDescription)
+		);
+	}
+	
+	/**
+	 * Compare two versions of an immutable recipe
+	 */
+	public static RecipeDiff of(@NotNull ImmutableRecipe before, @NotNull ImmutableRecipe after) {
+		return of(before.toRecipe(), after.toRecipe());
+	}
+	
+	private static List<Change<Ingredient>> diffIngredients(List<Ingredient> before, List<Ingredient> after) {
+		// Queue up the old indexes of each name, so repeated names pair up in order
+		Map<String, List<Integer>> byName = new HashMap<>();
+		for(int i = 0; i < before.size(); i++) {
+			byName.computeIfAbsent(before.get(i).ingredient, k -> new ArrayList<>(1)).add(i);
+		}
+		
+		List<Change<Ingredient>> changes = new ArrayList<>();
+		boolean[] matched = new boolean[before.size()];
+		for(int j = 0; j < after.size(); j++) {
+			Ingredient a = after.get(j);
+			List<Integer> indexes = byName.get(a.ingredient);
+			if(indexes == null || indexes.isEmpty()) {
+				changes.add(new Change<>(Kind.ADDED, -1, j, null, a));
+				continue;
+			}
+			int i = indexes.remove(0);
+			matched[i] = true;
+			Ingredient b = before.get(i);
+			if(b.unit != a.unit || !Objects.equals(b.amount, a.amount)) {
+				changes.add(new Change<>(Kind.CHANGED, i, j, b, a));
+			}
+		}
+		for(int i = 0; i < before.size(); i++) {
+			if(!matched[i]) {
+				changes.add(new Change<>(Kind.REMOVED, i, -1, before.get(i), null));
+			}
+		}
+		return changes;
+	}
+	
+	private static List<Change<String>> diffProcedure(List<String> before, List<String> after) {
+		// Skip the common start and end, which is usually most of it
+		int start = 0;
+		while(start < before.size() && start < after.size() && before.get(start).equals(after.get(start))) {
+			start++;
+		}
+		int endB = before.size();
+		int endA = after.size();
+		while(endB > start && endA > start && before.get(endB - 1).equals(after.get(endA - 1))) {
+			endB--;
+			endA--;
+		}
+		
+		// Longest common subsequence of what's left
+		int n = endB - start;
+		int m = endA - start;
+		int[][] lcs = new int[n + 1][m + 1];
+		for(int i = n - 1; i >= 0; i--) {
+			for(int j = m - 1; j >= 0; j--) {
+				lcs[i][j] = before.get(start + i).equals(after.get(start + j))
+							? lcs[i + 1][j + 1] + 1
+							: Math.max(lcs[i + 1][j], lcs[i][j + 1]);
+			}
+		}
+		
+		List<Change<String>> changes = new ArrayList<>();
+		List<Integer> removed = new ArrayList<>();
+		List<Integer> added = new ArrayList<>();
+		int i = 0;
+		int j = 0;
+		while(i < n || j < m) {
+			if(i < n && j < m && before.get(start + i).equals(after.get(start + j))) {
+				flush(changes, before, after, removed, added);
+				i++;
+				j++;
+			} else if(j < m && (i == n || lcs[i][j + 1] >= lcs[i + 1][j])) {
+				added.add(start + j++);
+			} else {
+				removed.add(start + i++);
+			}
+		}
+		flush(changes, before, after, removed, added);
+		return changes;
+	}
+	
+	/**
+	 * Pair up a run of removed and added steps as changed steps, and add the rest as they are
+	 */
+	private static void flush(List<Change<String>> changes, List<String> before, List<String> after, List<Integer> removed, List<Integer> added) {
+		int paired = Math.min(removed.size(), added.size());
+		for(int k = 0; k < paired; k++) {
+			int i = removed.get(k);
+			int j = added.get(k);
+			changes.add(new Change<>(Kind.CHANGED, i, j, before.get(i), after.get(j)));
+		}
+		for(int k = paired; k < removed.size(); k++) {
+			int i = removed.get(k);
+			changes.add(new Change<>(Kind.REMOVED, i, -1, before.get(i), null));
+		}
+		for(int k = paired; k < added.size(); k++) {
+			int j = added.get(k);
+			changes.add(new Change<>(Kind.ADDED, -1, j, null, after.get(j)));
+		}
+		removed.clear();
+		added.clear();
+	}
+	
+	/**
+	 * Tags in a that aren't in b
+	 */
+	private static List<String> missing(@Nullable List<String> a, @Nullable List<String> b) {
+		if(a == null) {
+			return new ArrayList<>();
+		}
+		Set<String> result = new LinkedHashSet<>(a);
+		if(b != null) {
+			b.forEach(result::remove);
+		}
+		return new ArrayList<>(result);
+	}
+	
+	/**
+	 * Added, removed and changed ingredients: changes in the order of the new recipe, then removals
+	 */
+	public List<Change<Ingredient>> getIngredientChanges() {
+		return ingredients;
+	}
+	
+	/**
+	 * Added, removed and changed steps, in order
+	 */
+	public List<Change<String>> getProcedureChanges() {
+		return procedure;
+	}
+	
+	public List<String> getAddedTags() {
+		return addedTags;
+	}
+	
+	public List<String> getRemovedTags() {
+		return removedTags;
+	}
+	
+	public boolean isTitleChanged() {
+		return titleChanged;
+	}
+	
+	public boolean isDescriptionChanged() {
+		return descriptionChanged;
+	}
+	
+	public boolean isLongDescriptionChanged() {
+		return longDescriptionChanged;
+	}
+	
+	/**
+	 * Whether the recipes are the same. Reordered ingredients and tags aren't counted as changes.
+	 */
+	public boolean isEmpty() {
+		return ingredients.isEmpty() && procedure.isEmpty() && addedTags.isEmpty() && removedTags.isEmpty()
+			   && !titleChanged && !descriptionChanged && !longDescriptionChanged;
+	}
+	
+	@Override
+	public String toString() {
+		if(isEmpty()) {
+			return "No changes";
+		}
+		StringBuilder s = new StringBuilder();
+		if(titleChanged) {
+			s.append("Title changed\n");
+		}
+		if(descriptionChanged) {
+			s.append("Description changed\n");
+		}
+		if(longDescriptionChanged) {
+			s.append("Long description changed\n");
+		}
+		for(Change<Ingredient> c : ingredients) {
+			s.append("Ingredient ").append(c).append('\n');
+		}
+		for(Change<String> c : procedure) {
+			s.append("Step ").append(c).append('\n');
+		}
+		for(String tag : addedTags) {
+			s.append("Tag + ").append(tag).append('\n');
+		}
+		for(String tag : removedTags) {
+			s.append("Tag - ").append(tag).append('\n');
+		}
+		return s.toString();
+	}
+}
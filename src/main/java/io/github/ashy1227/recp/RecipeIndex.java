@@ -0,0 +1,360 @@
+package io.github.ashy1227.recp;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index from ingredient names and tags to the recipes that contain them
+ * <p>
+ * Recipes are identified by an int id chosen by the caller, such as their number in a {@link RECPArchive}. Names are
+ * read straight from the INGR and tags chunks, without decoding the rest of the recipe, and normalized by
+ * {@link #normalize(String)}. Each name maps to a sorted list of recipe ids; queries intersect those lists, smallest
+ * first, so they never touch a recipe file.
+ * <p>
+ * The index is kept uncompressed in memory for fast intersection and saved to disk with each list delta-encoded as
+ * variable-length ints. It can be loaded, added to and saved again as new recipes arrive.
+ */
+public class RecipeIndex {
+	/**
+	 * Index file signature
+	 */
+	public static final int SIGNATURE = 0x52494458;
+	
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+	
+	protected final Map<String, PostingList> ingredients = new HashMap<>();
+	protected final Map<String, PostingList> tags = new HashMap<>();
+	protected final PostingList all = new PostingList();
+	
+	/**
+	 * Build an index of every recipe in an archive, using their numbers in the archive as ids
+	 *
+	 * @throws IOException if error occurs reading the archive
+	 */
+	public static RecipeIndex build(RECPArchive archive) throws IOException {
+		RecipeIndex index = new RecipeIndex();
+		for(int n = 0; n < archive.size(); n++) {
+			RECPFile.Chunk meta = archive.getChunk(n, RECPFile.ChunkType.META);
+			Charset charSet = RECPFile.TextEncoding.toCharset(meta == null ? 0 : meta.data.getLong(meta.data.position()));
+			index.add(n, charSet, archive.getChunk(n, RECPFile.ChunkType.INGR), archive.getChunk(n, RECPFile.ChunkType.tags));
+		}
+		return index;
+	}
+	
+	/**
+	 * Add a recipe to the index
+	 *
+	 * @throws IllegalArgumentException if a recipe with this id has already been added
+	 */
+	public void add(int id, RECPFile file) {
+		RECPFile.Chunk meta = file.getChunk(RECPFile.ChunkType.META);
+		Charset charSet = RECPFile.TextEncoding.toCharset(meta == null ? 0 : meta.data.getLong(meta.data.position()));
+		add(id, charSet, file.getChunk(RECPFile.ChunkType.INGR), file.getChunk(RECPFile.ChunkType.tags));
+	}
+	
+	protected synchronized void add(int id, Charset charSet, @Nullable RECPFile.Chunk ingr, @Nullable RECPFile.Chunk tagChunk) {
+		if(id < 0) {
+			throw new IllegalArgumentException(String.format("Invalid recipe id %d", id));
+		}
+		if(all.contains(id)) {
+			throw new IllegalArgumentException(String.format("Recipe %d is already indexed", id));
+		}
+		
+		// Parse both chunks before touching the index, so an invalid chunk leaves it unchanged
+		List<String> names = new ArrayList<>();
+		if(ingr != null) {
+			ByteBuffer b = ingr.data.duplicate();
+			int length = b.getInt();
+			for(int i = 0; i < length; i++) {
+				// Skip the unit and amount
+				b.position(b.position() + 5);
+				int size = b.getInt();
+				names.add(normalize(Recipe.getString(b, size, charSet)));
+			}
+		}
+		List<String> tagNames = new ArrayList<>();
+		if(tagChunk != null) {
+			ByteBuffer b = tagChunk.data.duplicate();
+			int length = b.getInt();
+			for(int i = 0; i < length; i++) {
+				int size = b.get() & 0xff;
+				tagNames.add(normalize(Recipe.getString(b, size, charSet)));
+			}
+		}
+		
+		all.add(id);
+		for(String name : names) {
+			ingredients.computeIfAbsent(name, k -> new PostingList()).add(id);
+		}
+		for(String name : tagNames) {
+			tags.computeIfAbsent(name, k -> new PostingList()).add(id);
+		}
+	}
+	
+	/**
+	 * Find the recipes that contain every one of the ingredients and have every one of the tags. Names are normalized
+	 * the same way as when indexing, so matching is case-insensitive.
+	 *
+	 * @return sorted recipe ids; every indexed recipe if no ingredients or tags are given
+	 */
+	public synchronized int[] query(Collection<String> ingredients, Collection<String> tags) {
+		List<PostingList> lists = new ArrayList<>(ingredients.size() + tags.size());
+		for(String name : ingredients) {
+			PostingList list = this.ingredients.get(normalize(name));
+			if(list == null) {
+				return new int[0];
+			}
+			lists.add(list);
+		}
+		for(String name : tags) {
+			PostingList list = this.tags.get(normalize(name));
+			if(list == null) {
+				return new int[0];
+			}
+			lists.add(list);
+		}
+		if(lists.isEmpty()) {
+			return all.toArray();
+		}
+		
+		lists.sort(Comparator.comparingInt(l -> l.size));
+		int[] result = lists.get(0).toArray();
+		int length = result.length;
+		for(int i = 1; i < lists.size() && length > 0; i++) {
+			length = intersect(result, length, lists.get(i));
+		}
+		return Arrays.copyOf(result, length);
+	}
+	
+	/**
+	 * Recipes containing an ingredient
+	 *
+	 * @return sorted recipe ids
+	 */
+	public int[] withIngredient(String name) {
+		return query(List.of(name), List.of());
+	}
+	
+	/**
+	 * Recipes with a tag
+	 *
+	 * @return sorted recipe ids
+	 */
+	public int[] withTag(String name) {
+		return query(List.of(), List.of(name));
+	}
+	
+	/**
+	 * Number of recipes in the index
+	 */
+	public synchronized int size() {
+		return all.size;
+	}
+	
+	/**
+	 * Normalize an ingredient name or tag for indexing: trimmed, lower case, and with runs of whitespace collapsed to a
+	 * single space
+	 */
+	public static String normalize(String name) {
+		return WHITESPACE.matcher(name.strip()).replaceAll(" ").toLowerCase(Locale.ROOT);
+	}
+	
+	/**
+	 * Save the index to a file. The file is written next to the destination first and then moved into place, so a
+	 * crash doesn't leave a partial index behind.
+	 *
+	 * @throws IOException if error occurs writing the file
+	 */
+	public synchronized void save(Path path) throws IOException {
+		Path dir = path.toAbsolutePath().getParent();
+		Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+		try {
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+				out.writeInt(SIGNATURE);
+				all.write(out);
+				writeMap(out, ingredients);
+				writeMap(out, tags);
+			}
+			Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+	
+	/**
+	 * Load an index saved with {@link #save(Path)}
+	 *
+	 * @throws IllegalArgumentException if the file isn't a valid index
+	 * @throws IOException if error occurs reading the file
+	 */
+	public static RecipeIndex load(Path path) throws IOException {
+		RecipeIndex index = new RecipeIndex();
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			if(in.readInt() != SIGNATURE) {
+				throw new IllegalArgumentException("Invalid index signature");
+			}
+			index.all.read(in);
+			readMap(in, index.ingredients);
+			readMap(in, index.tags);
+		}
+		return index;
+	}
+	
+	private static void writeMap(DataOutputStream out, Map<String, PostingList> map) throws IOException {
+		out.writeInt(map.size());
+		for(Map.Entry<String, PostingList> e : map.entrySet()) {
+			byte[] key = e.getKey().getBytes(StandardCharsets.UTF_8);
+			out.writeInt(key.length);
+			out.write(key);
+			e.getValue().write(out);
+		}
+	}
+	
+	private static void readMap(DataInputStream in, Map<String, PostingList> map) throws IOException {
+		int keys = in.readInt();
+		if(keys < 0) {
+			throw new IllegalArgumentException(String.format("Invalid key count %d", keys));
+		}
+		for(int i = 0; i < keys; i++) {
+			int size = in.readInt();
+			if(size < 0) {
+				throw new IllegalArgumentException(String.format("Invalid key size %d", size));
+			}
+			byte[] key = new byte[size];
+			in.readFully(key);
+			PostingList list = new PostingList();
+			list.read(in);
+			map.put(new String(key, StandardCharsets.UTF_8), list);
+		}
+	}
+	
+	/**
+	 * Intersect the first length ids of result with a list, in place, by galloping through the list
+	 *
+	 * @return the number of ids left in result
+	 */
+	private static int intersect(int[] result, int length, PostingList list) {
+		int[] ids = list.ids;
+		int n = 0;
+		int lo = 0;
+		for(int i = 0; i < length && lo < list.size; i++) {
+			int id = result[i];
+			// Gallop to a range that contains id, then binary search it
+			int step = 1;
+			int hi = lo;
+			while(hi < list.size && ids[hi] < id) {
+				lo = hi + 1;
+				hi += step;
+				step <<= 1;
+			}
+			int j = Arrays.binarySearch(ids, lo, Math.min(hi + 1, list.size), id);
+			if(j >= 0) {
+				result[n++] = id;
+				lo = j + 1;
+			} else {
+				lo = -j - 1;
+			}
+		}
+		return n;
+	}
+	
+	/**
+	 * Sorted set of recipe ids
+	 */
+	protected static class PostingList {
+		int[] ids = new int[4];
+		int size;
+		
+		boolean contains(int id) {
+			return Arrays.binarySearch(ids, 0, size, id) >= 0;
+		}
+		
+		void add(int id) {
+			if(size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			if(size == 0 || ids[size - 1] < id) {
+				// Ids are usually added in increasing order
+				ids[size++] = id;
+				return;
+			}
+			int i = Arrays.binarySearch(ids, 0, size, id);
+			if(i >= 0) {
+				return;
+			}
+			i = -i - 1;
+			System.arraycopy(ids, i, ids, i + 1, size - i);
+			ids[i] = id;
+			size++;
+		}
+		
+		int[] toArray() {
+			return Arrays.copyOf(ids, size);
+		}
+		
+		/**
+		 * Write as a count followed by the gaps between consecutive ids, as variable-length ints
+		 */
+		void write(DataOutputStream out) throws IOException {
+			out.writeInt(size);
+			int previous = 0;
+			for(int i = 0; i < size; i++) {
+				int gap = ids[i] - previous;
+				previous = ids[i];
+				while((gap & ~0x7f) != 0) {
+					out.writeByte((gap & 0x7f) | 0x80);
+					gap >>>= 7;
+				}
+				out.writeByte(gap);
+			}
+		}
+		
+		void read(DataInputStream in) throws IOException {
+			int count = in.readInt();
+			if(count < 0) {
+				throw new IllegalArgumentException(String.format("Invalid posting list size %d", count));
+			}
+			ids = new int[Math.max(count, 4)];
+			int previous = 0;
+			for(int i = 0; i < count; i++) {
+				int gap = 0;
+				for(int shift = 0; ; shift += 7) {
+					if(shift > 28) {
+						throw new IllegalArgumentException("Invalid variable-length int");
+					}
+					int b = in.readUnsignedByte();
+					gap |= (b & 0x7f) << shift;
+					if((b & 0x80) == 0) {
+						break;
+					}
+				}
+				previous += gap;
+				if(i > 0 && gap <= 0) {
+					throw new IllegalArgumentException("Posting list isn't sorted");
+				}
+				ids[i] = previous;
+			}
+			size = count;
+		}
+	}
+}
@@ -0,0 +1,365 @@
+package io.github.ashy1227.recp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Watches a directory and reads RECP files as they are created or modified, publishing each one as a
+ * {@link RecipeCorpus.Entry} holding either the recipe or the error that prevented reading it
+ * <p>
+ * Filesystem events are debounced: once an event arrives, the watcher waits until the directory has been quiet for
+ * the debounce delay (or 10 times that at most) and handles everything that changed as one batch, so a file written
+ * in several pieces is read once. Files whose modification time and size haven't changed since they were last read
+ * are skipped, so the cost of watching depends on how much changes rather than how many files there are. Deleted
+ * files are forgotten but not published.
+ * <p>
+ * Files are read on a fixed number of worker threads with a bounded queue. When subscribers fall behind,
+ * {@link SubmissionPublisher#submit} blocks the workers, the queue fills up and the watching thread reads files itself,
+ * so it stops taking events until the subscribers catch up. If the operating system drops events in the meantime, the
+ * directory is rescanned.
+ * <p>
+ * Subscribe before calling {@link #start}, since entries published without subscribers are dropped.
+ */
+public class RecipeWatcher implements Flow.Publisher<RecipeCorpus.Entry>, Closeable {
+	private final Path dir;
+	private final long debounceNanos;
+	private final WatchService watchService;
+	private final ThreadPoolExecutor workers;
+	private final ExecutorService delivery;
+	private final SubmissionPublisher<RecipeCorpus.Entry> publisher;
+	private final Thread thread;
+	
+	/**
+	 * Modification time and size of each file as of when it was last read successfully
+	 */
+	private final Map<Path, Stamp> known = new ConcurrentHashMap<>();
+	/**
+	 * Files being read, mapped to whether they changed again while being read
+	 */
+	private final Map<Path, Boolean> reading = new ConcurrentHashMap<>();
+	
+	private final LongAdder events = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder reads = new LongAdder();
+	private final LongAdder skips = new LongAdder();
+	
+	private volatile boolean readExisting;
+	private volatile boolean closed;
+	
+	/**
+	 * @param threads        number of threads reading files
+	 * @param queueSize      number of files that can wait for a thread before the watching thread reads them itself
+	 * @param bufferCapacity number of entries buffered for each subscriber before reading stops
+	 * @param debounceMillis how long the directory must be quiet before a batch of changes is read
+	 * @throws IOException if error occurs starting to watch the directory
+	 */
+	public RecipeWatcher(Path dir, int threads, int queueSize, int bufferCapacity, long debounceMillis) throws IOException {
+		if(threads <= 0) {
+			throw new IllegalArgumentException(String.format("Invalid thread count %d", threads));
+		}
+		if(queueSize <= 0) {
+			throw new IllegalArgumentException(String.format("Invalid queue size %d", queueSize));
+		}
+		if(debounceMillis < 0) {
+			throw new IllegalArgumentException(String.format("Invalid debounce delay %d", debounceMillis));
+		}
+		this.dir = dir.toAbsolutePath().normalize();
+		this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+		
+		this.watchService = this.dir.getFileSystem().newWatchService();
+		this.dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+		
+		this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize), r -> {
+			Thread t = new Thread(r, "RecipeWatcher worker " + this.dir.getFileName());
+			t.setDaemon(true);
+			return t;
+		}, new ThreadPoolExecutor.CallerRunsPolicy());
+		// Subscribers are called on their own threads, since workers may be blocked waiting for them
+		this.delivery = Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, "RecipeWatcher publisher " + this.dir.getFileName());
+			t.setDaemon(true);
+			return t;
+		});
+		this.publisher = new SubmissionPublisher<>(delivery, bufferCapacity);
+		
+		this.thread = new Thread(this::run, "RecipeWatcher " + this.dir.getFileName());
+		this.thread.setDaemon(true);
+	}
+	
+	/**
+	 * Watch a directory with one thread per processor and a 100 ms debounce delay
+	 *
+	 * @throws IOException if error occurs starting to watch the directory
+	 */
+	public RecipeWatcher(Path dir) throws IOException {
+		this(dir, Runtime.getRuntime().availableProcessors(), 256, Flow.defaultBufferSize(), 100);
+	}
+	
+	@Override
+	public void subscribe(Flow.Subscriber<? super RecipeCorpus.Entry> subscriber) {
+		publisher.subscribe(subscriber);
+	}
+	
+	/**
+	 * Start watching
+	 *
+	 * @param readExisting whether to read and publish the files already in the directory, or only files changed from
+	 *                     now on
+	 * @throws IllegalStateException if already started or closed
+	 */
+	public void start(boolean readExisting) {
+		if(closed) {
+			throw new IllegalStateException("Watcher is closed");
+		}
+		if(thread.getState() != Thread.State.NEW) {
+			throw new IllegalStateException("Watcher is already started");
+		}
+		this.readExisting = readExisting;
+		thread.start();
+	}
+	
+	private void run() {
+		try {
+			// Files already there are either read now or remembered as unchanged
+			for(Path path : RecipeCorpus.list(dir)) {
+				if(readExisting) {
+					schedule(path);
+				} else {
+					Stamp stamp = Stamp.of(path);
+					if(stamp != null) {
+						known.put(path, stamp);
+					}
+				}
+			}
+			
+			while(!closed) {
+				WatchKey key = watchService.take();
+				Set<Path> batch = new LinkedHashSet<>();
+				boolean overflow = collect(key, batch);
+				
+				// Keep collecting until the directory goes quiet
+				long deadline = System.nanoTime() + debounceNanos * 10;
+				while(true) {
+					long wait = Math.min(debounceNanos, deadline - System.nanoTime());
+					if(wait <= 0 || (key = watchService.poll(wait, TimeUnit.NANOSECONDS)) == null) {
+						break;
+					}
+					overflow |= collect(key, batch);
+				}
+				batches.increment();
+				
+				if(overflow) {
+					// Events were lost, so check every file; unchanged ones are still skipped
+					batch.addAll(RecipeCorpus.list(dir));
+					known.keySet().removeIf(path -> !Files.exists(path));
+				}
+				for(Path path : batch) {
+					schedule(path);
+				}
+			}
+		} catch(ClosedWatchServiceException | InterruptedException e) {
+			// Closed
+		} catch(IOException | RuntimeException e) {
+			publisher.closeExceptionally(e);
+		}
+	}
+	
+	/**
+	 * Add the .recp files from a key's events to a batch and reset the key
+	 *
+	 * @return whether events were lost
+	 * @throws IOException if the directory can no longer be watched, e.g. because it was deleted
+	 */
+	private boolean collect(WatchKey key, Set<Path> batch) throws IOException {
+		boolean overflow = false;
+		for(WatchEvent<?> event : key.pollEvents()) {
+			events.increment();
+			if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				overflow = true;
+				continue;
+			}
+			Path path = dir.resolve((Path) event.context());
+			if(path.getFileName().toString().endsWith(RecipeCorpus.EXTENSION)) {
+				batch.add(path);
+			}
+		}
+		if(!key.reset() && !closed) {
+			throw new IOException(String.format("Directory %s can no longer be watched", dir));
+		}
+		return overflow;
+	}
+	
+	/**
+	 * Read a file on a worker, unless it's already being read, in which case that worker checks it again afterwards
+	 */
+	private void schedule(Path path) {
+		// Inserts false if not being read, otherwise marks it to be checked again
+		if(reading.merge(path, false, (a, b) -> true)) {
+			return;
+		}
+		workers.execute(() -> {
+			do {
+				reading.put(path, false);
+				read(path);
+			} while(!reading.remove(path, false) && !closed);
+		});
+	}
+	
+	private void read(Path path) {
+		Stamp stamp;
+		try {
+			stamp = Stamp.of(path);
+		} catch(IOException e) {
+			publish(new RecipeCorpus.Entry(path, null, e));
+			return;
+		}
+		if(stamp == null) {
+			known.remove(path);
+			return;
+		}
+		if(stamp.equals(known.get(path))) {
+			skips.increment();
+			return;
+		}
+		
+		reads.increment();
+		RecipeCorpus.Entry entry = RecipeCorpus.read(path);
+		if(entry.isSuccess()) {
+			known.put(path, stamp);
+		} else {
+			// Read it again next time, it may have been half written
+			known.remove(path);
+		}
+		publish(entry);
+	}
+	
+	private void publish(RecipeCorpus.Entry entry) {
+		if(!closed) {
+			publisher.submit(entry);
+		}
+	}
+	
+	/**
+	 * Stop watching, wait for files being read to be published and complete the subscribers. Waits at most 10 seconds
+	 * for subscribers that have fallen behind.
+	 *
+	 * @throws IOException if error occurs closing the watch service
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		try {
+			watchService.close();
+			thread.interrupt();
+			workers.shutdown();
+			try {
+				workers.awaitTermination(10, TimeUnit.SECONDS);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		} finally {
+			publisher.close();
+			// Lets the subscribers finish what's buffered, then the threads exit
+			delivery.shutdown();
+		}
+	}
+	
+	public Path getDirectory() {
+		return dir;
+	}
+	
+	/**
+	 * Number of filesystem events received
+	 */
+	public long getEvents() {
+		return events.sum();
+	}
+	
+	/**
+	 * Number of batches of events handled
+	 */
+	public long getBatches() {
+		return batches.sum();
+	}
+	
+	/**
+	 * Number of files read
+	 */
+	public long getReads() {
+		return reads.sum();
+	}
+	
+	/**
+	 * Number of files skipped because they hadn't changed since they were last read
+	 */
+	public long getSkips() {
+		return skips.sum();
+	}
+	
+	/**
+	 * Number of files read and unchanged since
+	 */
+	public int size() {
+		return known.size();
+	}
+	
+	private static final class Stamp {
+		final FileTime modified;
+		final long size;
+		
+		Stamp(FileTime modified, long size) {
+			this.modified = modified;
+			this.size = size;
+		}
+		
+		/**
+		 * @return the stamp of a file, or null if it doesn't exist or isn't a regular file
+		 */
+		static Stamp of(Path path) throws IOException {
+			BasicFileAttributes attributes;
+			try {
+				attributes = Files.readAttributes(path, BasicFileAttributes.class);
+			} catch(NoSuchFileException e) {
+				return null;
+			}
+			return attributes.isRegularFile() ? new Stamp(attributes.lastModifiedTime(), attributes.size()) : null;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			return obj != null && this.getClass() == obj.getClass()
+				   && ((Stamp) obj).size == this.size
+				   && ((Stamp) obj).modified.equals(this.modified);
+		}
+		
+		@Override
+		public int hashCode() {
+			return 31 * modified.hashCode() + Long.hashCode(size);
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package io.github.ashy1227.recp;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of decoded strings, keyed by their encoded bytes, for names that repeat across many recipes
+ * <p>
+ * Looking up bytes that are already in the pool returns the pooled String without copying or decoding anything.
+ * The pool is a fixed-size direct-mapped table: each slot holds one string, and a new string whose bytes hash to an
+ * occupied slot replaces it. Memory use is therefore bounded and lookups never block, so one pool can be shared by
+ * every thread decoding recipes.
+ *
+ * @see Recipe#decode(RECPFile, java.util.Set, StringPool)
+ */
+public class StringPool {
+	/**
+	 * Strings longer than this many encoded bytes aren't pooled
+	 */
+	public static final int DEFAULT_MAX_LENGTH = 64;
+	
+	private final AtomicReferenceArray<Entry> table;
+	private final int mask;
+	private final int maxLength;
+	
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	
+	/**
+	 * @param capacity  number of slots, rounded up to a power of two
+	 * @param maxLength longest string to pool, in encoded bytes
+	 */
+	public StringPool(int capacity, int maxLength) {
+		if(capacity < 1 || capacity > 1 << 30) {
+			throw new IllegalArgumentException(String.format("Invalid capacity %d", capacity));
+		}
+		int size = Integer.highestOneBit(capacity);
+		if(size < capacity) {
+			size <<= 1;
+		}
+		this.table = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+		this.maxLength = maxLength;
+	}
+	
+	public StringPool(int capacity) {
+		this(capacity, DEFAULT_MAX_LENGTH);
+	}
+	
+	/**
+	 * Get the string encoded by the next size bytes of a buffer, and advance the buffer past them
+	 */
+	public String get(ByteBuffer b, int size, Charset charSet) {
+		if(size > maxLength) {
+			return Recipe.getString(b, size, charSet);
+		}
+		
+		int start = b.position();
+		int hash = hash(b, start, size);
+		Entry e = table.get(hash & mask);
+		if(e != null && e.hash == hash && e.charSet.equals(charSet) && e.matches(b, start, size)) {
+			hits.increment();
+			b.position(start + size);
+			return e.value;
+		}
+		
+		misses.increment();
+		byte[] bytes = new byte[size];
+		b.get(bytes);
+		String value = new String(bytes, charSet);
+		table.set(hash & mask, new Entry(hash, bytes, charSet, value));
+		return value;
+	}
+	
+	/**
+	 * Number of lookups that returned a pooled string
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+	
+	/**
+	 * Number of lookups that had to decode, not counting strings too long to pool
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+	
+	/**
+	 * Fraction of lookups that returned a pooled string, or 0 if there haven't been any
+	 */
+	public double getHitRate() {
+		long h = hits.sum();
+		long total = h + misses.sum();
+		return total == 0 ? 0 : (double) h / total;
+	}
+	
+	/**
+	 * Empty the pool and reset its statistics
+	 */
+	public void clear() {
+		for(int i = 0; i < table.length(); i++) {
+			table.set(i, null);
+		}
+		hits.reset();
+		misses.reset();
+	}
+	
+	private static int hash(ByteBuffer b, int start, int size) {
+		int h = size;
+		for(int i = start; i < start + size; i++) {
+			h = 31 * h + b.get(i);
+		}
+		// Spread the high bits into the slot index
+		return h ^ (h >>> 16);
+	}
+	
+	private static final class Entry {
+		final int hash;
+		final byte[] bytes;
+		final Charset charSet;
+		final String value;
+		
+		Entry(int hash, byte[] bytes, Charset charSet, String value) {
+			this.hash = hash;
+			this.bytes = bytes;
+			this.charSet = charSet;
+			this.value = value;
+		}
+		
+		boolean matches(ByteBuffer b, int start, int size) {
+			if(bytes.length != size) {
+				return false;
+			}
+			for(int i = 0; i < size; i++) {
+				if(bytes[i] != b.get(start + i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -1,56 +1,70 @@
 package io.github.ashy1227.recp;
 
+import org.jetbrains.annotations.Nullable;
+
 /**
  * Enum containing valid RECP units
  */
 public class Unit {
-	public static final Unit MICROGRAM             = new Unit((byte)0x00, "micrograms");
-	public static final Unit MILLIGRAM             = new Unit((byte)0x01, "milligrams");
-	public static final Unit GRAM                  = new Unit((byte)0x02, "grams");
-	public static final Unit KILOGRAM              = new Unit((byte)0x03, "kilograms");
-	
-	public static final Unit OUNCE                 = new Unit((byte)0x10, "ounces");
-	public static final Unit POUND                 = new Unit((byte)0x11, "pounds");
-	
-	public static final Unit MILLILITER            = new Unit((byte)0x20, "milliliters");
-	public static final Unit DECILITER             = new Unit((byte)0x21, "deciliters");
-	public static final Unit LITER                 = new Unit((byte)0x22, "liters");
-	
-	public static final Unit CUSTOMARY_DROP        = new Unit((byte)0x30, "drop");
-	public static final Unit CUSTOMARY_SMIDGEN     = new Unit((byte)0x31, "smidgen");
-	public static final Unit CUSTOMARY_PINCH       = new Unit((byte)0x32, "pinch");
-	public static final Unit CUSTOMARY_DASH        = new Unit((byte)0x33, "dash");
-	public static final Unit CUSTOMARY_TEASPOON    = new Unit((byte)0x34, "teaspoons");
-	public static final Unit CUSTOMARY_TABLESPOON  = new Unit((byte)0x35, "tablespoons");
-	public static final Unit CUSTOMARY_FLUID_OUNCE = new Unit((byte)0x36, "fluid ounces");
-	public static final Unit CUSTOMARY_CUP         = new Unit((byte)0x37, "cups");
-	public static final Unit CUSTOMARY_PINT        = new Unit((byte)0x38, "pints");
-	public static final Unit CUSTOMARY_QUART       = new Unit((byte)0x39, "quarts");
-	public static final Unit CUSTOMARY_GALLON      = new Unit((byte)0x3a, "gallons");
-	public static final Unit CUSTOMARY_PECK        = new Unit((byte)0x3b, "pecks");
-	public static final Unit CUSTOMARY_BUSHEL      = new Unit((byte)0x3c, "bushels");
-	
-	public static final Unit IMPERIAL_DROP         = new Unit((byte)0x50, "drop");
-	public static final Unit IMPERIAL_SMIDGEN      = new Unit((byte)0x51, "smidgen");
-	public static final Unit IMPERIAL_PINCH        = new Unit((byte)0x52, "pinch");
-	public static final Unit IMPERIAL_DASH         = new Unit((byte)0x53, "dash");
-	public static final Unit IMPERIAL_TEASPOON     = new Unit((byte)0x54, "teaspoons");
-	public static final Unit IMPERIAL_TABLESPOON   = new Unit((byte)0x55, "tablespoons");
-	public static final Unit IMPERIAL_FLUID_OUNCE  = new Unit((byte)0x56, "fluid ounces");
-	public static final Unit IMPERIAL_CUP          = new Unit((byte)0x57, "cups");
-	public static final Unit IMPERIAL_PINT         = new Unit((byte)0x58, "pints");
-	public static final Unit IMPERIAL_QUART        = new Unit((byte)0x59, "quarts");
-	public static final Unit IMPERIAL_GALLON       = new Unit((byte)0x5a, "gallons");
-	public static final Unit IMPERIAL_PECK         = new Unit((byte)0x5b, "pecks");
-	public static final Unit IMPERIAL_BUSHEL       = new Unit((byte)0x5c, "bushels");
-	public static final Unit CANADIAN_CUP          = new Unit((byte)0x6d, "cups");
-	public static final Unit AUSTRALIAN_CUP        = new Unit((byte)0x6e, "cups");
-	public static final Unit AUSTRALIAN_TABLESPOON = new Unit((byte)0x6f, "tablespoons");
-	
-	public static final Unit NONE                  = new Unit((byte)0x80, "");
-	public static final Unit QUANTITY              = new Unit((byte)0x81, "");
-	
-	protected static Unit[] units = {
+	/**
+	 * Exact sizes that customary and imperial volumes are defined from, in millionths of a milliliter. A US gallon is
+	 * 231 cubic inches and a US peck is 537.605 cubic inches.
+	 */
+	private static final long CUBIC_INCH = 16_387_064L;
+	private static final long IMPERIAL_GALLON_SIZE = 4_546_090_000L;
+	private static final long MILLION = 1_000_000L;
+	
+	public static final Unit MICROGRAM             = new Unit((byte)0x00, "micrograms",   Dimension.MASS,  1L, 1_000_000L);
+	public static final Unit MILLIGRAM             = new Unit((byte)0x01, "milligrams",   Dimension.MASS,  1L, 1_000L);
+	public static final Unit GRAM                  = new Unit((byte)0x02, "grams",        Dimension.MASS,  1L, 1L);
+	public static final Unit KILOGRAM              = new Unit((byte)0x03, "kilograms",    Dimension.MASS,  1_000L, 1L);
+	
+	public static final Unit OUNCE                 = new Unit((byte)0x10, "ounces",       Dimension.MASS,  28_349_523_125L, 1_000_000_000L);
+	public static final Unit POUND                 = new Unit((byte)0x11, "pounds",       Dimension.MASS,  45_359_237L, 100_000L);
+	
+	public static final Unit MILLILITER            = new Unit((byte)0x20, "milliliters",  Dimension.VOLUME, 1L, 1L);
+	public static final Unit DECILITER             = new Unit((byte)0x21, "deciliters",   Dimension.VOLUME, 100L, 1L);
+	public static final Unit LITER                 = new Unit((byte)0x22, "liters",       Dimension.VOLUME, 1_000L, 1L);
+	
+	public static final Unit CUSTOMARY_DROP        = new Unit((byte)0x30, "drop",         Dimension.VOLUME, 231 * CUBIC_INCH, 73_728 * MILLION);
+	public static final Unit CUSTOMARY_SMIDGEN     = new Unit((byte)0x31, "smidgen",      Dimension.VOLUME, 231 * CUBIC_INCH, 24_576 * MILLION);
+	public static final Unit CUSTOMARY_PINCH       = new Unit((byte)0x32, "pinch",        Dimension.VOLUME, 231 * CUBIC_INCH, 12_288 * MILLION);
+	public static final Unit CUSTOMARY_DASH        = new Unit((byte)0x33, "dash",         Dimension.VOLUME, 231 * CUBIC_INCH, 6_144 * MILLION);
+	public static final Unit CUSTOMARY_TEASPOON    = new Unit((byte)0x34, "teaspoons",    Dimension.VOLUME, 231 * CUBIC_INCH, 768 * MILLION);
+	public static final Unit CUSTOMARY_TABLESPOON  = new Unit((byte)0x35, "tablespoons",  Dimension.VOLUME, 231 * CUBIC_INCH, 256 * MILLION);
+	public static final Unit CUSTOMARY_FLUID_OUNCE = new Unit((byte)0x36, "fluid ounces", Dimension.VOLUME, 231 * CUBIC_INCH, 128 * MILLION);
+	public static final Unit CUSTOMARY_CUP         = new Unit((byte)0x37, "cups",         Dimension.VOLUME, 231 * CUBIC_INCH, 16 * MILLION);
+	public static final Unit CUSTOMARY_PINT        = new Unit((byte)0x38, "pints",        Dimension.VOLUME, 231 * CUBIC_INCH, 8 * MILLION);
+	public static final Unit CUSTOMARY_QUART       = new Unit((byte)0x39, "quarts",       Dimension.VOLUME, 231 * CUBIC_INCH, 4 * MILLION);
+	public static final Unit CUSTOMARY_GALLON      = new Unit((byte)0x3a, "gallons",      Dimension.VOLUME, 231 * CUBIC_INCH, MILLION);
+	public static final Unit CUSTOMARY_PECK        = new Unit((byte)0x3b, "pecks",        Dimension.VOLUME, 537_605 * CUBIC_INCH, 1000 * MILLION);
+	public static final Unit CUSTOMARY_BUSHEL      = new Unit((byte)0x3c, "bushels",      Dimension.VOLUME, 4 * 537_605 * CUBIC_INCH, 1000 * MILLION);
+	
+	public static final Unit IMPERIAL_DROP         = new Unit((byte)0x50, "drop",         Dimension.VOLUME, IMPERIAL_GALLON_SIZE, 73_728 * MILLION);
+	public static final Unit IMPERIAL_SMIDGEN      = new Unit((byte)0x51, "smidgen",      Dimension.VOLUME, IMPERIAL_GALLON_SIZE, 24_576 * MILLION);
+	public static final Unit IMPERIAL_PINCH        = new Unit((byte)0x52, "pinch",        Dimension.VOLUME, IMPERIAL_GALLON_SIZE, 12_288 * MILLION);
+	public static final Unit IMPERIAL_DASH         = new Unit((byte)0x53, "dash",         Dimension.VOLUME, IMPERIAL_GALLON_SIZE, 6_144 * MILLION);
+	public static final Unit IMPERIAL_TEASPOON     = new Unit((byte)0x54, "teaspoons",    Dimension.VOLUME, IMPERIAL_GALLON_SIZE, 768 * MILLION);
+	public static final Unit IMPERIAL_TABLESPOON   = new Unit((byte)0x55, "tablespoons",  Dimension.VOLUME, IMPERIAL_GALLON_SIZE, 256 * MILLION);
+	public static final Unit IMPERIAL_FLUID_OUNCE  = new Unit((byte)0x56, "fluid ounces", Dimension.VOLUME, IMPERIAL_GALLON_SIZE, 160 * MILLION);
+	public static final Unit IMPERIAL_CUP          = new Unit((byte)0x57, "cups",         Dimension.VOLUME, IMPERIAL_GALLON_SIZE, 16 * MILLION);
+	public static final Unit IMPERIAL_PINT         = new Unit((byte)0x58, "pints",        Dimension.VOLUME, IMPERIAL_GALLON_SIZE, 8 * MILLION);
+	public static final Unit IMPERIAL_QUART        = new Unit((byte)0x59, "quarts",       Dimension.VOLUME, IMPERIAL_GALLON_SIZE, 4 * MILLION);
+	public static final Unit IMPERIAL_GALLON       = new Unit((byte)0x5a, "gallons",      Dimension.VOLUME, IMPERIAL_GALLON_SIZE, MILLION);
+	public static final Unit IMPERIAL_PECK         = new Unit((byte)0x5b, "pecks",        Dimension.VOLUME, 2 * IMPERIAL_GALLON_SIZE, MILLION);
+	public static final Unit IMPERIAL_BUSHEL       = new Unit((byte)0x5c, "bushels",      Dimension.VOLUME, 8 * IMPERIAL_GALLON_SIZE, MILLION);
+	public static final Unit CANADIAN_CUP          = new Unit((byte)0x6d, "cups",         Dimension.VOLUME, IMPERIAL_GALLON_SIZE, 20 * MILLION);
+	public static final Unit AUSTRALIAN_CUP        = new Unit((byte)0x6e, "cups",         Dimension.VOLUME, 250L, 1L);
+	public static final Unit AUSTRALIAN_TABLESPOON = new Unit((byte)0x6f, "tablespoons",  Dimension.VOLUME, 20L, 1L);
+	
+	public static final Unit NONE                  = new Unit((byte)0x80, "",             Dimension.NONE,  0L, 1L);
+	public static final Unit QUANTITY              = new Unit((byte)0x81, "",             Dimension.COUNT, 1L, 1L);
+	
+	/**
+	 * Unit of every ID, indexed by the unsigned ID. IDs without a built-in or registered unit hold an unknown-unit
+	 * sentinel (see {@link #isKnown()}), so lookups never fail. Replaced as a whole when a unit is registered.
+	 */
+	protected static volatile Unit[] units = {
 		    // 0x00-0x0f
 		MICROGRAM,             MILLIGRAM,             GRAM,                  KILOGRAM,
 		null,                  null,                  null,                  null,
@@ -87,12 +101,12 @@ public class Unit {
 		null,                  null,                  null,                  null,
 		null,                  CANADIAN_CUP,          AUSTRALIAN_CUP,        AUSTRALIAN_TABLESPOON,
 		    // 0x70-0x7f
-		NONE,                  QUANTITY,              null,                  null,
 		null,                  null,                  null,                  null,
 		null,                  null,                  null,                  null,
 		null,                  null,                  null,                  null,
-		    // 0x80-0x8f
 		null,                  null,                  null,                  null,
+		    // 0x80-0x8f
+		NONE,                  QUANTITY,              null,                  null,
 		null,                  null,                  null,                  null,
 		null,                  null,                  null,                  null,
 		null,                  null,                  null,                  null,
@@ -133,18 +147,150 @@ public class Unit {
 		null,                  null,                  null,                  null,
 	};
 	
+	static {
+		Unit[] table = units.clone();
+		for(int i = 0; i < table.length; i++) {
+			if(table[i] == null) {
+				table[i] = new Unit((byte) i);
+			}
+		}
+		units = table;
+	}
+	
+	static {
+		link(MICROGRAM, 1000, MILLIGRAM);
+		link(MILLIGRAM, 1000, GRAM);
+		link(GRAM, 1000, KILOGRAM);
+		
+		link(OUNCE, 16, POUND);
+		
+		link(MILLILITER, 1000, LITER);
+		
+		link(CUSTOMARY_TEASPOON, 3, CUSTOMARY_TABLESPOON);
+		link(CUSTOMARY_TABLESPOON, 16, CUSTOMARY_CUP);
+		link(CUSTOMARY_CUP, 2, CUSTOMARY_PINT);
+		link(CUSTOMARY_PINT, 2, CUSTOMARY_QUART);
+		link(CUSTOMARY_QUART, 4, CUSTOMARY_GALLON);
+		
+		link(IMPERIAL_TEASPOON, 3, IMPERIAL_TABLESPOON);
+		link(IMPERIAL_TABLESPOON, 16, IMPERIAL_CUP);
+		link(IMPERIAL_CUP, 2, IMPERIAL_PINT);
+		link(IMPERIAL_PINT, 2, IMPERIAL_QUART);
+		link(IMPERIAL_QUART, 4, IMPERIAL_GALLON);
+	}
+	
 	public final byte id;
 	public final String name;
+	public final Dimension dimension;
+	/**
+	 * Size of one of this unit in the base unit of its dimension: grams, milliliters or items
+	 */
+	public final WideFraction size;
+	
+	private final boolean known;
+	
+	private Unit larger;
+	private short largerFactor;
 	
-	Unit(byte id, String name) {
+	Unit(byte id, String name, Dimension dimension, long sizeNumerator, long sizeDenominator) {
 		this.id = id;
 		this.name = name;
+		this.dimension = dimension;
+		this.size = WideFraction.of(sizeNumerator, sizeDenominator);
+		this.known = true;
+	}
+	
+	/**
+	 * Construct the sentinel for an ID with no unit
+	 */
+	private Unit(byte id) {
+		this.id = id;
+		this.name = String.format("unit 0x%02x", id & 0xff);
+		this.dimension = Dimension.NONE;
+		this.size = WideFraction.ZERO;
+		this.known = false;
+	}
+	
+	/**
+	 * Whether this is a built-in or registered unit, rather than the placeholder for an ID with no unit
+	 */
+	public boolean isKnown() {
+		return known;
+	}
+	
+	/**
+	 * Next larger unit that amounts in this unit are normalized into, e.g. tablespoons for teaspoons
+	 *
+	 * @return the larger unit, or null if this unit is never normalized
+	 */
+	@Nullable
+	public Unit getLarger() {
+		return larger;
+	}
+	
+	/**
+	 * How many of this unit make one of {@link #getLarger()}, or 0 if there is no larger unit
+	 */
+	public short getLargerFactor() {
+		return largerFactor;
+	}
+	
+	/**
+	 * Normalize amounts of {@code factor} smaller units into one larger unit
+	 */
+	private static void link(Unit smaller, int factor, Unit larger) {
+		smaller.largerFactor = (short) factor;
+		smaller.larger = larger;
 	}
 	
 	/**
 	 * Get Unit based on ID
+	 *
+	 * @return the unit, or an unknown-unit sentinel if no unit has that ID. The same sentinel is returned for an ID
+	 *         every time, until a unit is registered for it.
 	 */
 	public static Unit get(byte id) {
-		return units[id];
+		return units[id & 0xff];
+	}
+	
+	/**
+	 * Register a custom unit for an ID that has no unit yet. Custom units can be converted like built-in ones unless
+	 * their dimension is {@link Dimension#NONE}.
+	 *
+	 * @param sizeNumerator   numerator of the size of one of this unit in grams, milliliters or items
+	 * @param sizeDenominator denominator of the size
+	 * @return the new unit
+	 * @throws IllegalArgumentException if the ID already has a unit
+	 */
+	public static Unit register(byte id, String name, Dimension dimension, long sizeNumerator, long sizeDenominator) {
+		Unit unit = new Unit(id, name, dimension, sizeNumerator, sizeDenominator);
+		synchronized(Unit.class) {
+			Unit existing = units[id & 0xff];
+			if(existing.isKnown()) {
+				throw new IllegalArgumentException(String.format("ID 0x%02x is already used by %s", id & 0xff, existing.name));
+			}
+			
+			Unit[] table = units.clone();
+			table[id & 0xff] = unit;
+			units = table;
+			UnitConversion.rebuild();
+		}
+		return unit;
+	}
+	
+	/**
+	 * What a unit measures. Units can only be converted to other units of the same dimension.
+	 */
+	public enum Dimension {
+		MASS,
+		VOLUME,
+		/**
+		 * Number of items
+		 */
+		COUNT,
+		/**
+		 * No amount at all, never convertible
+		 */
+		NONE
 	}
 }
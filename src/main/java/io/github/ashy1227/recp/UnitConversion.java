@@ -0,0 +1,170 @@
+package io.github.ashy1227.recp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Conversions between units of the same {@link Unit.Dimension}
+ * <p>
+ * The factor between every pair of convertible units is precomputed into dense tables, both as a double and as an
+ * exact fraction, so converting an amount is a table lookup and a multiply. Only the exact path allocates, for its
+ * result.
+ */
+public final class UnitConversion {
+	private static volatile Table table = new Table();
+	
+	private UnitConversion() {}
+	
+	/**
+	 * Recompute the tables after a unit has been registered
+	 */
+	static void rebuild() {
+		table = new Table();
+	}
+	
+	/**
+	 * Whether amounts in one unit can be converted to another
+	 */
+	public static boolean canConvert(Unit from, Unit to) {
+		Table t = table;
+		int i = t.index[from.id & 0xff];
+		int j = t.index[to.id & 0xff];
+		return i >= 0 && j >= 0 && !Double.isNaN(t.factors[i * t.size + j]);
+	}
+	
+	/**
+	 * Number of {@code to} units in one {@code from} unit
+	 *
+	 * @throws IllegalArgumentException if the units can't be converted
+	 */
+	public static double factor(Unit from, Unit to) {
+		Table t = table;
+		double f = t.factors[t.tableIndex(from, to)];
+		if(Double.isNaN(f)) {
+			throw incompatible(from, to);
+		}
+		return f;
+	}
+	
+	/**
+	 * Number of {@code to} units in one {@code from} unit, as an exact fraction
+	 *
+	 * @throws IllegalArgumentException if the units can't be converted
+	 * @throws ArithmeticException if the exact factor doesn't fit in 64 bits, use {@link #factor(Unit, Unit)} instead
+	 */
+	public static WideFraction exactFactor(Unit from, Unit to) {
+		Table t = table;
+		int k = t.tableIndex(from, to);
+		if(t.denominators[k] == 0) {
+			if(Double.isNaN(t.factors[k])) {
+				throw incompatible(from, to);
+			}
+			throw new ArithmeticException(String.format("Exact factor from %s to %s overflows", from.name, to.name));
+		}
+		return WideFraction.of(t.numerators[k], t.denominators[k]);
+	}
+	
+	/**
+	 * Convert an amount between units
+	 *
+	 * @throws IllegalArgumentException if the units can't be converted
+	 */
+	public static double convert(double amount, Unit from, Unit to) {
+		return amount * factor(from, to);
+	}
+	
+	/**
+	 * Convert an amount between units exactly
+	 *
+	 * @throws IllegalArgumentException if the units can't be converted
+	 * @throws ArithmeticException if the result doesn't fit in 64 bits
+	 */
+	public static WideFraction convert(WideFraction amount, Unit from, Unit to) {
+		return amount.multiply(exactFactor(from, to));
+	}
+	
+	/**
+	 * Convert an amount between units exactly
+	 *
+	 * @throws IllegalArgumentException if the units can't be converted
+	 * @throws ArithmeticException if the result doesn't fit in a Fraction
+	 */
+	public static Fraction convert(Fraction amount, Unit from, Unit to) {
+		return convert(amount.widen(), from, to).narrow();
+	}
+	
+	private static IllegalArgumentException incompatible(Unit from, Unit to) {
+		return new IllegalArgumentException(String.format("Can't convert %s (%s) to %s (%s)", from.name, from.dimension, to.name, to.dimension));
+	}
+	
+	/**
+	 * Conversion tables for every unit registered when the table was built
+	 */
+	private static final class Table {
+		/**
+		 * Row/column of each unit ID in the tables, or -1 if the unit can't be converted
+		 */
+		final int[] index = new int[256];
+		final int size;
+		
+		/**
+		 * Factor from unit i to unit j at {@code [i * size + j]}, NaN if the units have different dimensions
+		 */
+		final double[] factors;
+		/**
+		 * Exact factor from unit i to unit j at {@code [i * size + j]}. The denominator is 0 if the units have
+		 * different dimensions or the exact factor doesn't fit in 64 bits.
+		 */
+		final long[] numerators;
+		final long[] denominators;
+		
+		Table() {
+			Arrays.fill(index, -1);
+			
+			List<Unit> convertible = new ArrayList<>();
+			for(int id = 0; id < 256; id++) {
+				Unit unit = Unit.get((byte) id);
+				if(unit.dimension != Unit.Dimension.NONE) {
+					index[id] = convertible.size();
+					convertible.add(unit);
+				}
+			}
+			size = convertible.size();
+			
+			factors = new double[size * size];
+			numerators = new long[size * size];
+			denominators = new long[size * size];
+			for(int i = 0; i < size; i++) {
+				Unit from = convertible.get(i);
+				for(int j = 0; j < size; j++) {
+					Unit to = convertible.get(j);
+					int k = i * size + j;
+					
+					if(from.dimension != to.dimension) {
+						factors[k] = Double.NaN;
+						continue;
+					}
+					
+					factors[k] = from.size.asDouble() / to.size.asDouble();
+					try {
+						WideFraction f = from.size.divide(to.size);
+						numerators[k] = f.numerator;
+						denominators[k] = f.denominator;
+					} catch(ArithmeticException e) {
+						// Only the double path is available for this pair
+					}
+				}
+			}
+		}
+		
+		int tableIndex(Unit from, Unit to) {
+			int i = index[from.id & 0xff];
+			int j = index[to.id & 0xff];
+			if(i < 0 || j < 0) {
+				throw incompatible(from, to);
+			}
+			return i * size + j;
+		}
+	}
+}
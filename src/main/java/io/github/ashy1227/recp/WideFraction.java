@@ -0,0 +1,125 @@
+package io.github.ashy1227.recp;
+
+/**
+ * 128-bit fraction type for intermediate results that don't fit in a {@link Fraction}
+ * <p>
+ * Like Fraction, WideFractions are immutable and always in lowest terms with a positive denominator. Arithmetic
+ * cross-reduces before multiplying and throws {@link ArithmeticException} if a result still overflows 64 bits.
+ */
+public final class WideFraction implements Comparable<WideFraction> {
+	public static final WideFraction ZERO = new WideFraction(0, 1);
+	public static final WideFraction ONE = new WideFraction(1, 1);
+	
+	public final long numerator;
+	public final long denominator;
+	
+	private WideFraction(long numerator, long denominator) {
+		this.numerator = numerator;
+		this.denominator = denominator;
+	}
+	
+	/**
+	 * Get a fraction in lowest terms
+	 *
+	 * @throws ArithmeticException if the denominator is zero
+	 */
+	public static WideFraction of(long numerator, long denominator) {
+		if(denominator == 0) {
+			throw new ArithmeticException("Zero denominator");
+		}
+		if(denominator < 0) {
+			numerator = Math.negateExact(numerator);
+			denominator = Math.negateExact(denominator);
+		}
+		long g = Fraction.gcd(numerator, denominator);
+		return new WideFraction(numerator / g, denominator / g);
+	}
+	
+	public static WideFraction of(long n) {
+		return new WideFraction(n, 1);
+	}
+	
+	/**
+	 * @throws ArithmeticException if the result overflows
+	 */
+	public WideFraction multiply(WideFraction f) {
+		long g1 = Fraction.gcd(this.numerator, f.denominator);
+		long g2 = Fraction.gcd(f.numerator, this.denominator);
+		return of(
+			Math.multiplyExact(this.numerator / g1, f.numerator / g2),
+			Math.multiplyExact(this.denominator / g2, f.denominator / g1)
+		);
+	}
+	
+	/**
+	 * @throws ArithmeticException if the result overflows
+	 */
+	public WideFraction multiply(Fraction f) {
+		return multiply(f.widen());
+	}
+	
+	/**
+	 * @throws ArithmeticException if f is zero, or the result overflows
+	 */
+	public WideFraction divide(WideFraction f) {
+		return multiply(f.reciprocal());
+	}
+	
+	/**
+	 * @throws ArithmeticException if the result overflows
+	 */
+	public WideFraction add(WideFraction f) {
+		long g = Fraction.gcd(this.denominator, f.denominator);
+		long d = this.denominator / g;
+		return of(
+			Math.addExact(Math.multiplyExact(this.numerator, f.denominator / g), Math.multiplyExact(f.numerator, d)),
+			Math.multiplyExact(d, f.denominator)
+		);
+	}
+	
+	/**
+	 * @throws ArithmeticException if this is zero
+	 */
+	public WideFraction reciprocal() {
+		return of(denominator, numerator);
+	}
+	
+	/**
+	 * Narrow back to a 16-bit fraction
+	 *
+	 * @throws ArithmeticException if the fraction doesn't fit in 16 bits
+	 */
+	public Fraction narrow() {
+		return Fraction.of(numerator, denominator);
+	}
+	
+	public double asDouble() {
+		return (double) this.numerator / (double) this.denominator;
+	}
+	
+	@Override
+	public int compareTo(WideFraction f) {
+		// Compare the 128-bit cross products, high halves signed and low halves unsigned
+		long x = this.numerator, y = f.denominator;
+		long u = f.numerator, v = this.denominator;
+		int c = Long.compare(Math.multiplyHigh(x, y), Math.multiplyHigh(u, v));
+		return c != 0 ? c : Long.compareUnsigned(x * y, u * v);
+	}
+	
+	@Override
+	public String toString() {
+		return this.numerator + "/" + this.denominator;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		return obj != null && this.getClass() == obj.getClass()
+			   && ((WideFraction) obj).numerator == this.numerator
+			   && ((WideFraction) obj).denominator == this.denominator;
+	}
+	
+	@Override
+	public int hashCode() {
+		return Long.hashCode(numerator) * 31 + Long.hashCode(denominator);
+	}
+}
@@ -0,0 +1,54 @@
+package io.github.ashy1227.recp;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BufferPoolTest {
+	private final BufferPool pool = new BufferPool(false, 4);
+	
+	@Test
+	void reusesReleasedBuffers() {
+		ByteBuffer b = pool.acquire(1000);
+		assertEquals(1024, b.capacity());
+		assertEquals(1000, b.limit());
+		assertEquals(1, pool.getOutstanding());
+		pool.release(b);
+		assertEquals(0, pool.getOutstanding());
+		assertSame(b, pool.acquire(600));
+		assertEquals(1, pool.getHits());
+	}
+	
+	@Test
+	void doesNotCountBuffersOutsideSizeClasses() {
+		ByteBuffer large = pool.acquire(BufferPool.MAX_SIZE + 1);
+		assertEquals(0, pool.getOutstanding());
+		pool.release(large);
+		pool.release(ByteBuffer.allocate(1000));
+		pool.release(ByteBuffer.allocateDirect(1024));
+		assertEquals(0, pool.getOutstanding());
+	}
+	
+	@Test
+	void rejectsDoubleRelease() {
+		ByteBuffer a = pool.acquire(100);
+		ByteBuffer b = pool.acquire(100);
+		pool.release(a);
+		assertThrows(IllegalStateException.class, () -> pool.release(a));
+		assertEquals(1, pool.getOutstanding());
+		pool.release(b);
+		assertThrows(IllegalStateException.class, () -> pool.release(b));
+		assertEquals(0, pool.getOutstanding());
+		
+		// Each buffer is handed out once
+		assertNotSame(pool.acquire(100), pool.acquire(100));
+	}
+	
+	@Test
+	void rejectsMoreReleasesThanAcquires() {
+		assertThrows(IllegalStateException.class, () -> pool.release(ByteBuffer.allocate(512)));
+		assertEquals(0, pool.getOutstanding());
+	}
+}
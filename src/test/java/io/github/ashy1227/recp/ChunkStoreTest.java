@@ -0,0 +1,98 @@
+package io.github.ashy1227.recp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkStoreTest {
+	@TempDir Path dir;
+	
+	@Test
+	void storesSharedChunksOnce() throws IOException {
+		Recipe rice = TestRecipes.brownRice();
+		Recipe renamed = TestRecipes.brownRice();
+		renamed.title = "Brown Rice 2";
+		
+		try(ChunkStore store = ChunkStore.open(dir.resolve("store.pack"))) {
+			ChunkStore.Hash a = store.put(new RECPFile(rice));
+			int chunks = store.chunkCount();
+			ChunkStore.Hash b = store.put(new RECPFile(renamed));
+			assertNotEquals(a, b);
+			// Only the title chunk differs
+			assertEquals(chunks + 1, store.chunkCount());
+			assertEquals(2, store.size());
+			assertEquals(rice, new Recipe(store.get(a)));
+			assertEquals(renamed, new Recipe(store.get(b)));
+		}
+	}
+	
+	@Test
+	void reopensFromSavedIndex() throws IOException {
+		Path path = dir.resolve("store.pack");
+		ChunkStore.Hash hash;
+		try(ChunkStore store = ChunkStore.open(path)) {
+			hash = store.put(new RECPFile(TestRecipes.pancakes()));
+		}
+		assertTrue(Files.exists(dir.resolve("store.pack.idx")));
+		try(ChunkStore store = ChunkStore.open(path)) {
+			assertEquals(TestRecipes.pancakes(), new Recipe(store.get(hash)));
+		}
+	}
+	
+	@Test
+	void cutsOffPartialRecordAfterCrash() throws IOException {
+		Path path = dir.resolve("store.pack");
+		ChunkStore.Hash hash;
+		long size;
+		try(ChunkStore store = ChunkStore.open(path)) {
+			hash = store.put(new RECPFile(TestRecipes.soup()));
+			size = store.getPackSize();
+		}
+		
+		// A record header claiming more data than was written, and no index
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			ByteBuffer partial = ByteBuffer.allocate(1 + ChunkStore.Hash.SIZE + 4 + 10);
+			partial.put((byte) 0).position(1 + ChunkStore.Hash.SIZE);
+			partial.putInt(1000).flip();
+			channel.write(partial);
+		}
+		Files.delete(dir.resolve("store.pack.idx"));
+		
+		try(ChunkStore store = ChunkStore.open(path)) {
+			assertEquals(size, store.getPackSize());
+			assertEquals(size, Files.size(path));
+			assertEquals(TestRecipes.soup(), new Recipe(store.get(hash)));
+			
+			// Appending after the cut still works
+			ChunkStore.Hash more = store.put(new RECPFile(TestRecipes.pancakes()));
+			assertEquals(TestRecipes.pancakes(), new Recipe(store.get(more)));
+		}
+	}
+	
+	@Test
+	void rebuildsStaleIndex() throws IOException {
+		Path path = dir.resolve("store.pack");
+		try(ChunkStore store = ChunkStore.open(path)) {
+			store.put(new RECPFile(TestRecipes.soup()));
+		}
+		byte[] staleIndex = Files.readAllBytes(dir.resolve("store.pack.idx"));
+		ChunkStore.Hash hash;
+		try(ChunkStore store = ChunkStore.open(path)) {
+			hash = store.put(new RECPFile(TestRecipes.brownRice()));
+		}
+		Files.write(dir.resolve("store.pack.idx"), staleIndex);
+		
+		try(ChunkStore store = ChunkStore.open(path)) {
+			assertEquals(2, store.size());
+			assertEquals(TestRecipes.brownRice(), new Recipe(store.get(hash)));
+		}
+	}
+}
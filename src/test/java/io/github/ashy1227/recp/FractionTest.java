@@ -0,0 +1,32 @@
+package io.github.ashy1227.recp;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FractionTest {
+	@Test
+	void reducesAndMovesTheSign() {
+		Fraction f = Fraction.of(6, -8);
+		assertEquals(-3, f.numerator);
+		assertEquals(4, f.denominator);
+		assertEquals(Fraction.of(-3, 4), new Fraction((short) 6, (short) -8));
+		assertSame(Fraction.of(1, 2), Fraction.of(32, 64));
+	}
+	
+	@Test
+	void rejectsMinValueSigns() {
+		assertThrows(ArithmeticException.class, () -> Fraction.of(1, Long.MIN_VALUE));
+		assertThrows(ArithmeticException.class, () -> Fraction.of(0, Long.MIN_VALUE));
+		assertThrows(ArithmeticException.class, () -> Fraction.of(Long.MIN_VALUE, -1));
+		assertThrows(ArithmeticException.class, () -> Fraction.of(Long.MIN_VALUE, 1));
+	}
+	
+	@Test
+	void rejectsOverflow() {
+		assertThrows(ArithmeticException.class, () -> Fraction.of(1, 0));
+		assertThrows(ArithmeticException.class, () -> Fraction.of(1, -32768));
+		assertThrows(ArithmeticException.class, () -> Fraction.of(Short.MAX_VALUE).multiply((short) 2));
+		assertEquals(Fraction.of(-32768), Fraction.of(Short.MIN_VALUE, 1));
+	}
+}
@@ -0,0 +1,69 @@
+package io.github.ashy1227.recp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RECPArchiveTest {
+	@TempDir Path dir;
+	
+	private final List<Recipe> recipes = List.of(TestRecipes.brownRice(), TestRecipes.pancakes(), TestRecipes.soup());
+	
+	private Path write() throws IOException {
+		Path path = dir.resolve("recipes.rcpa");
+		try(RECPArchive.Writer writer = new RECPArchive.Writer(path)) {
+			for(int i = 0; i < recipes.size(); i++) {
+				assertEquals(i, writer.add(recipes.get(i), StandardCharsets.UTF_8));
+			}
+		}
+		return path;
+	}
+	
+	@Test
+	void readsBackEveryRecipe() throws IOException {
+		try(RECPArchive archive = RECPArchive.open(write())) {
+			assertEquals(recipes.size(), archive.size());
+			for(int n = 0; n < recipes.size(); n++) {
+				assertEquals(recipes.get(n), archive.getRecipe(n));
+				assertEquals(new RECPFile(recipes.get(n)), archive.getFile(n));
+			}
+		}
+	}
+	
+	@Test
+	void findsChunksThroughTheIndex() throws IOException {
+		try(RECPArchive archive = RECPArchive.open(write())) {
+			for(int n = 0; n < recipes.size(); n++) {
+				RECPFile.Chunk title = archive.getChunk(n, RECPFile.ChunkType.titl);
+				assertEquals(new RECPFile(recipes.get(n)).getChunk(RECPFile.ChunkType.titl), title);
+				assertEquals(recipes.get(n).title, archive.getRecipe(n, EnumSet.of(Recipe.Part.TITLE)).title);
+			}
+			// Soup has no long description
+			assertNull(archive.getChunk(2, RECPFile.ChunkType.ldsc));
+		}
+	}
+	
+	@Test
+	void rejectsOutOfRangeRecipes() throws IOException {
+		try(RECPArchive archive = RECPArchive.open(write())) {
+			assertThrows(IndexOutOfBoundsException.class, () -> archive.getRecipe(-1));
+			assertThrows(IndexOutOfBoundsException.class, () -> archive.getRecipe(recipes.size()));
+		}
+	}
+	
+	@Test
+	void emptyArchive() throws IOException {
+		Path path = dir.resolve("empty.rcpa");
+		new RECPArchive.Writer(path).close();
+		try(RECPArchive archive = RECPArchive.open(path)) {
+			assertEquals(0, archive.size());
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package io.github.ashy1227.recp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RECPFileTest {
+	@TempDir Path dir;
+	
+	/**
+	 * A raw PROC chunk with one step, exactly size bytes long
+	 */
+	private static RECPFile.Chunk procOfSize(int size) {
+		ByteBuffer b = ByteBuffer.allocate(size);
+		b.putInt(1).putInt(size - 8);
+		while(b.hasRemaining()) {
+			b.put((byte) 'a');
+		}
+		return new RECPFile.Chunk(RECPFile.ChunkType.PROC, b.flip());
+	}
+	
+	private static String stepOfSize(int size) {
+		return "a".repeat(size - 8);
+	}
+	
+	@Test
+	void patchesSameSizeChunkInPlace() throws IOException {
+		Recipe recipe = TestRecipes.brownRice();
+		Path path = dir.resolve("rice.recp");
+		recipe.writeToPath(path);
+		long size = Files.size(path);
+		
+		recipe.title = "Brown Ricf";
+		RECPFile.patchChunk(path, new RECPFile(recipe, StandardCharsets.UTF_8).getChunk(RECPFile.ChunkType.titl));
+		assertEquals(size, Files.size(path));
+		assertEquals(recipe, Recipe.readFromPath(path));
+	}
+	
+	@Test
+	void patchesDifferentSizeChunk() throws IOException {
+		Recipe recipe = TestRecipes.brownRice();
+		Path path = dir.resolve("rice.recp");
+		recipe.writeToPath(path);
+		
+		recipe.title = "Brown rice, the long way";
+		RECPFile.patchChunk(path, new RECPFile(recipe, StandardCharsets.UTF_8).getChunk(RECPFile.ChunkType.titl));
+		assertEquals(recipe, Recipe.readFromPath(path));
+	}
+	
+	@Test
+	void addsMissingChunkBeforeEnd() throws IOException {
+		Recipe recipe = TestRecipes.soup();
+		Path path = dir.resolve("soup.recp");
+		recipe.writeToPath(path);
+		
+		recipe.description = "Thick and orange";
+		RECPFile.patchChunk(path, new RECPFile(recipe, StandardCharsets.UTF_8).getChunk(RECPFile.ChunkType.desc));
+		assertEquals(recipe, Recipe.readFromPath(path));
+	}
+	
+	@Test
+	void patchesRawChunkOverCompressedChunkOfSameSize() throws IOException {
+		Recipe recipe = TestRecipes.brownRice();
+		recipe.procedure = Collections.nCopies(20, "Stir the rice and check whether it is done");
+		RECPFile file = new RECPFile(recipe, StandardCharsets.UTF_8);
+		file.compress(null, RECPFile.ChunkType.PROC);
+		RECPFile.Chunk compressed = file.chunks.stream().filter(RECPFile.Chunk::isCompressed).findFirst().orElseThrow();
+		Path path = dir.resolve("rice.recp");
+		file.writeToPath(path);
+		
+		int size = compressed.getSize();
+		RECPFile.patchChunk(path, procOfSize(size));
+		recipe.procedure = List.of(stepOfSize(size));
+		assertEquals(recipe, Recipe.readFromPath(path));
+	}
+	
+	@Test
+	void patchesCompressedChunkOverRawChunkOfSameSize() throws IOException {
+		Recipe recipe = TestRecipes.brownRice();
+		recipe.procedure = Collections.nCopies(20, "Stir the rice and check whether it is done");
+		RECPFile.Chunk compressed = new RECPFile(recipe, StandardCharsets.UTF_8).getChunk(RECPFile.ChunkType.PROC).compressed(null, 6);
+		
+		Recipe raw = TestRecipes.brownRice();
+		raw.procedure = List.of(stepOfSize(compressed.getSize()));
+		Path path = dir.resolve("rice.recp");
+		raw.writeToPath(path, StandardCharsets.UTF_8);
+		
+		RECPFile.patchChunk(path, compressed);
+		assertEquals(recipe, Recipe.readFromPath(path));
+	}
+	
+	@Test
+	void rejectsRequiredFraming() {
+		Path path = dir.resolve("unused.recp");
+		assertThrows(IllegalArgumentException.class, () -> RECPFile.patchChunk(path, new RECPFile.Chunk(RECPFile.ChunkType.END, new byte[0])));
+	}
+}
@@ -0,0 +1,119 @@
+package io.github.ashy1227.recp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RECPValidatorTest {
+	@TempDir Path dir;
+	
+	private final byte[] file = new RECPFile(TestRecipes.brownRice()).toByteArray();
+	private final ByteBuffer b = ByteBuffer.wrap(file);
+	
+	/**
+	 * Offset of the data of the first chunk of a type
+	 */
+	private int dataOffset(int type) {
+		int offset = 4;
+		while(b.getInt(offset + 4) != type) {
+			offset += 8 + b.getInt(offset);
+		}
+		return offset + 8;
+	}
+	
+	/**
+	 * Validate the file both in memory and through a channel, which must agree
+	 */
+	private RECPValidator.Problem validate() throws IOException {
+		RECPValidator.Problem problem = RECPValidator.validate(ByteBuffer.wrap(file));
+		Path path = dir.resolve("file.recp");
+		Files.write(path, file);
+		RECPValidator.Problem fromChannel = RECPValidator.validate(path);
+		assertEquals(String.valueOf(problem), String.valueOf(fromChannel));
+		return problem;
+	}
+	
+	private void assertProblem(RECPValidator.Reason reason, int offset) throws IOException {
+		RECPValidator.Problem problem = validate();
+		assertNotNull(problem);
+		assertEquals(reason, problem.reason, problem.toString());
+		assertEquals(offset, problem.offset, problem.toString());
+	}
+	
+	@Test
+	void acceptsValidFile() throws IOException {
+		assertNull(validate());
+	}
+	
+	@Test
+	void reportsBadSignatureAtStart() throws IOException {
+		b.putInt(0, 0);
+		assertProblem(RECPValidator.Reason.INVALID_SIGNATURE, 0);
+	}
+	
+	@Test
+	void reportsBadChunkSizeAtItsHeader() throws IOException {
+		int ingr = dataOffset(RECPFile.ChunkType.INGR) - 8;
+		b.putInt(ingr, -1);
+		assertProblem(RECPValidator.Reason.INVALID_SIZE, ingr);
+	}
+	
+	@Test
+	void reportsBadCountAtTheCount() throws IOException {
+		int ingr = dataOffset(RECPFile.ChunkType.INGR);
+		b.putInt(ingr, 1000);
+		assertProblem(RECPValidator.Reason.INVALID_COUNT, ingr);
+	}
+	
+	@Test
+	void reportsBadAmountAtTheAmount() throws IOException {
+		int amount = dataOffset(RECPFile.ChunkType.INGR) + 4 + 1;
+		b.putShort(amount + 2, (short) 0);
+		assertProblem(RECPValidator.Reason.INVALID_AMOUNT, amount);
+	}
+	
+	@Test
+	void reportsBadStringSizeAtTheSize() throws IOException {
+		int name = dataOffset(RECPFile.ChunkType.INGR) + 4 + 5;
+		b.putInt(name, 10_000);
+		assertProblem(RECPValidator.Reason.INVALID_SIZE, name);
+	}
+	
+	@Test
+	void reportsBadStepSizeAtTheSize() throws IOException {
+		int proc = dataOffset(RECPFile.ChunkType.PROC);
+		int second = proc + 4 + 4 + b.getInt(proc + 4);
+		b.putInt(second, -1);
+		assertProblem(RECPValidator.Reason.INVALID_SIZE, second);
+	}
+	
+	@Test
+	void reportsBadTitleSizeAtTheSize() throws IOException {
+		int title = dataOffset(RECPFile.ChunkType.titl);
+		b.putInt(title, 10_000);
+		assertProblem(RECPValidator.Reason.INVALID_SIZE, title);
+	}
+	
+	@Test
+	void reportsNonEmptyEndAtItsHeader() throws IOException {
+		int end = dataOffset(RECPFile.ChunkType.END) - 8;
+		b.putInt(end, 1);
+		// Nothing follows END, so the size is also past the end of the file
+		assertProblem(RECPValidator.Reason.INVALID_SIZE, end);
+	}
+	
+	@Test
+	void reportsTruncationAtTheMissingHeader() throws IOException {
+		int end = dataOffset(RECPFile.ChunkType.END) - 8;
+		RECPValidator.Problem problem = RECPValidator.validate(ByteBuffer.wrap(file, 0, end));
+		assertNotNull(problem);
+		assertEquals(RECPValidator.Reason.TRUNCATED, problem.reason);
+		assertEquals(end, problem.offset);
+	}
+}
@@ -0,0 +1,60 @@
+package io.github.ashy1227.recp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RECPWriterTest {
+	private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+	
+	@Test
+	void writesFileThatReadsBack() throws IOException {
+		RECPFile file = new RECPFile(TestRecipes.brownRice());
+		try(RECPWriter writer = new RECPWriter(Channels.newChannel(out), 64)) {
+			writer.writeFile(file);
+		}
+		assertEquals(file, RECPFile.fromByteArray(out.toByteArray()));
+		assertArrayEquals(file.toByteArray(), out.toByteArray());
+	}
+	
+	@Test
+	void finishesFileWithoutEnd() throws IOException {
+		RECPFile file = new RECPFile(TestRecipes.soup());
+		try(RECPWriter writer = new RECPWriter(Channels.newChannel(out), 64)) {
+			for(RECPFile.Chunk c : file.chunks) {
+				if(c.getType() != RECPFile.ChunkType.END) {
+					writer.writeChunk(c);
+				}
+			}
+		}
+		assertEquals(file, RECPFile.fromByteArray(out.toByteArray()));
+	}
+	
+	@Test
+	void closesWithoutWritingAnything() throws IOException {
+		BufferPool pool = new BufferPool(false, 1);
+		new RECPWriter(Channels.newChannel(out), 64, pool).close();
+		assertEquals(0, out.size());
+		assertEquals(0, pool.getOutstanding());
+	}
+	
+	@Test
+	void closeDoesNotHideExceptionInsideChunk() {
+		BufferPool pool = new BufferPool(false, 1);
+		IllegalStateException e = assertThrows(IllegalStateException.class, () -> {
+			try(RECPWriter writer = new RECPWriter(Channels.newChannel(out), 64, pool)) {
+				writer.beginChunk(RECPFile.ChunkType.META, 8);
+				writer.write(ByteBuffer.wrap("too long for the chunk".getBytes(StandardCharsets.US_ASCII)));
+			}
+		});
+		assertTrue(e.getMessage().startsWith("Chunk data exceeds"), e.getMessage());
+		assertEquals(0, e.getSuppressed().length);
+		assertEquals(0, pool.getOutstanding());
+	}
+}
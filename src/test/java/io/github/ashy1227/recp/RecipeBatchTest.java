@@ -0,0 +1,89 @@
+package io.github.ashy1227.recp;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecipeBatchTest {
+	/**
+	 * INGR chunk data with one gram of each name, where a null name is an ingredient with a zero denominator
+	 */
+	private static ByteBuffer ingr(Charset charSet, String... names) {
+		ByteBuffer b = ByteBuffer.allocate(4096);
+		b.putInt(names.length);
+		for(String name : names) {
+			byte[] bytes = (name == null ? "bad" : name).getBytes(charSet);
+			b.put(Unit.GRAM.id).putShort((short) 1).putShort((short) (name == null ? 0 : 1));
+			b.putInt(bytes.length).put(bytes);
+		}
+		return b.flip();
+	}
+	
+	@Test
+	void buildsFromFiles() {
+		RecipeBatch.Builder builder = RecipeBatch.builder();
+		assertEquals(0, builder.add(new RECPFile(TestRecipes.brownRice())));
+		assertEquals(1, builder.add(new RECPFile(TestRecipes.pancakes(), StandardCharsets.UTF_16)));
+		RecipeBatch batch = builder.build();
+		
+		assertEquals(2, batch.recipeCount());
+		assertEquals(7, batch.size());
+		assertEquals(4, batch.recipeEnd(0));
+		assertEquals("Salt", batch.getName(2));
+		// Salt is shared between the recipes
+		assertEquals(batch.getNameId(2), batch.getNameId(6));
+		assertEquals(6, batch.nameCount());
+	}
+	
+	@Test
+	void sumsByIngredient() {
+		RecipeBatch.Builder builder = RecipeBatch.builder();
+		builder.add(ingr(StandardCharsets.UTF_8, "Flour", "Sugar"), StandardCharsets.UTF_8);
+		builder.add(ingr(StandardCharsets.UTF_8, "Flour"), StandardCharsets.UTF_8);
+		Map<String, Double> totals = builder.build().sumByIngredient(Unit.GRAM);
+		assertEquals(Map.of("Flour", 2.0, "Sugar", 1.0), totals);
+	}
+	
+	@Test
+	void invalidRecipeLeavesBuilderUnchanged() {
+		for(Charset charSet : new Charset[] {StandardCharsets.UTF_8, StandardCharsets.UTF_16}) {
+			RecipeBatch.Builder builder = RecipeBatch.builder();
+			builder.add(ingr(charSet, "water"), charSet);
+			assertThrows(ArithmeticException.class, () -> builder.add(ingr(charSet, "salt", null), charSet));
+			assertThrows(RuntimeException.class, () -> builder.add(ingr(charSet, "pepper").limit(10), charSet));
+			assertEquals(1, builder.add(ingr(charSet, "water", "salt"), charSet));
+			
+			RecipeBatch batch = builder.build();
+			assertEquals(2, batch.recipeCount());
+			assertEquals(1, batch.recipeStart(1));
+			assertEquals(3, batch.recipeEnd(1));
+			assertEquals(2, batch.nameCount());
+			assertEquals("water", batch.name(0));
+			assertEquals("salt", batch.name(1));
+			assertEquals(batch.getNameId(0), batch.getNameId(1));
+		}
+	}
+	
+	@Test
+	void invalidRecipeAfterDictionaryGrowsLeavesBuilderUnchanged() {
+		String[] names = new String[101];
+		for(int i = 0; i < 100; i++) {
+			names[i] = "ingredient " + i;
+		}
+		RecipeBatch.Builder builder = RecipeBatch.builder();
+		builder.add(ingr(StandardCharsets.UTF_8, "ingredient 5"), StandardCharsets.UTF_8);
+		// Adds enough names to grow the table before failing on the last one
+		assertThrows(ArithmeticException.class, () -> builder.add(ingr(StandardCharsets.UTF_8, names), StandardCharsets.UTF_8));
+		builder.add(ingr(StandardCharsets.UTF_8, "ingredient 5", "ingredient 7"), StandardCharsets.UTF_8);
+		
+		RecipeBatch batch = builder.build();
+		assertEquals(2, batch.nameCount());
+		assertEquals(0, batch.getNameId(1));
+		assertEquals("ingredient 7", batch.getName(2));
+	}
+}
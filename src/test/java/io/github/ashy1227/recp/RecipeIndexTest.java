@@ -0,0 +1,92 @@
+package io.github.ashy1227.recp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecipeIndexTest {
+	@TempDir Path dir;
+	
+	private static RecipeIndex index() {
+		RecipeIndex index = new RecipeIndex();
+		index.add(0, new RECPFile(TestRecipes.brownRice()));
+		index.add(1, new RECPFile(TestRecipes.pancakes()));
+		index.add(2, new RECPFile(TestRecipes.soup()));
+		return index;
+	}
+	
+	@Test
+	void queriesIngredientsAndTags() {
+		RecipeIndex index = index();
+		assertArrayEquals(new int[] {0, 1}, index.withIngredient("salt"));
+		assertArrayEquals(new int[] {0, 2}, index.withIngredient("  WATER "));
+		assertArrayEquals(new int[] {0, 1}, index.withTag("breakfast"));
+		assertArrayEquals(new int[] {1}, index.query(List.of("Salt"), List.of("Sweet")));
+		assertArrayEquals(new int[0], index.query(List.of("Salt", "Pumpkin"), List.of()));
+		assertArrayEquals(new int[] {0, 1, 2}, index.query(List.of(), List.of()));
+	}
+	
+	@Test
+	void savesAndLoads() throws IOException {
+		RecipeIndex index = index();
+		Path path = dir.resolve("recipes.ridx");
+		index.save(path);
+		RecipeIndex loaded = RecipeIndex.load(path);
+		assertEquals(index.size(), loaded.size());
+		for(String name : List.of("salt", "water", "flour", "pumpkin", "rice")) {
+			assertArrayEquals(index.withIngredient(name), loaded.withIngredient(name), name);
+		}
+		assertArrayEquals(index.withTag("breakfast"), loaded.withTag("breakfast"));
+		
+		// A loaded index can be extended and saved again
+		loaded.add(3, new RECPFile(TestRecipes.soup()));
+		loaded.save(path);
+		assertArrayEquals(new int[] {2, 3}, RecipeIndex.load(path).withIngredient("pumpkin"));
+	}
+	
+	@Test
+	void buildsFromArchive() throws IOException {
+		Path path = dir.resolve("recipes.rcpa");
+		try(RECPArchive.Writer writer = new RECPArchive.Writer(path)) {
+			writer.add(TestRecipes.brownRice(), StandardCharsets.UTF_16);
+			writer.add(TestRecipes.pancakes(), StandardCharsets.UTF_8);
+		}
+		try(RECPArchive archive = RECPArchive.open(path)) {
+			RecipeIndex index = RecipeIndex.build(archive);
+			assertArrayEquals(new int[] {0, 1}, index.withIngredient("salt"));
+			assertArrayEquals(new int[] {1}, index.withIngredient("milk"));
+		}
+	}
+	
+	@Test
+	void invalidRecipeLeavesIndexUnchanged() {
+		RecipeIndex index = index();
+		
+		// Two ingredients claimed, only one present
+		RECPFile file = new RECPFile(TestRecipes.soup());
+		ByteBuffer ingr = file.getChunk(RECPFile.ChunkType.INGR).getData();
+		byte[] bytes = new byte[ingr.remaining()];
+		ingr.get(bytes);
+		ByteBuffer broken = ByteBuffer.wrap(bytes);
+		broken.putInt(0, 3);
+		List<RECPFile.Chunk> chunks = new ArrayList<>(file.chunks);
+		chunks.replaceAll(c -> c.getType() == RECPFile.ChunkType.INGR ? new RECPFile.Chunk(RECPFile.ChunkType.INGR, broken) : c);
+		file.chunks = chunks;
+		
+		assertThrows(RuntimeException.class, () -> index.add(3, file));
+		assertEquals(3, index.size());
+		assertArrayEquals(new int[] {0, 2}, index.withIngredient("water"));
+		
+		// The id wasn't taken
+		index.add(3, new RECPFile(TestRecipes.soup()));
+		assertArrayEquals(new int[] {2, 3}, index.withIngredient("pumpkin"));
+	}
+}
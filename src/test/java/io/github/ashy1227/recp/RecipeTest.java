@@ -0,0 +1,79 @@
+package io.github.ashy1227.recp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecipeTest {
+	@TempDir Path dir;
+	
+	@Test
+	void roundTripsThroughEveryCharset() {
+		Recipe recipe = TestRecipes.pancakes();
+		for(Charset charSet : List.of(StandardCharsets.UTF_8, StandardCharsets.UTF_16, StandardCharsets.ISO_8859_1)) {
+			byte[] bytes = new RECPFile(recipe, charSet).toByteArray();
+			assertEquals(recipe, new Recipe(RECPFile.fromByteArray(bytes)), charSet.name());
+		}
+	}
+	
+	@Test
+	void roundTripsThroughFile() throws IOException {
+		Recipe recipe = TestRecipes.brownRice();
+		Path path = dir.resolve("rice.recp");
+		recipe.writeToPath(path);
+		assertEquals(recipe, Recipe.readFromPath(path));
+		assertEquals(recipe, Recipe.mapFromPath(path));
+	}
+	
+	@Test
+	void roundTripsCompressedChunks() {
+		Recipe recipe = TestRecipes.brownRice();
+		recipe.procedure = Collections.nCopies(20, "Stir the rice and check whether it is done");
+		RECPFile file = new RECPFile(recipe);
+		file.compress(null, RECPFile.ChunkType.PROC, RECPFile.ChunkType.ldsc);
+		assertTrue(file.chunks.stream().anyMatch(c -> c.isCompressed() && c.getContentType() == RECPFile.ChunkType.PROC));
+		assertEquals(recipe, new Recipe(RECPFile.fromByteArray(file.toByteArray())));
+	}
+	
+	@Test
+	void decodesOnlyRequestedParts() {
+		Recipe recipe = TestRecipes.brownRice();
+		Recipe listing = Recipe.decode(new RECPFile(recipe), EnumSet.of(Recipe.Part.TITLE, Recipe.Part.DESCRIPTION));
+		assertEquals(recipe.title, listing.title);
+		assertEquals(recipe.description, listing.description);
+		assertNull(listing.longDescription);
+		assertNull(listing.tags);
+		assertTrue(listing.ingredients.isEmpty());
+		assertTrue(listing.procedure.isEmpty());
+	}
+	
+	@Test
+	void decodesChunksOfByteArraysInPlace() {
+		RECPFile file = RECPFile.fromByteArray(new RECPFile(TestRecipes.brownRice()).toByteArray());
+		assertTrue(file.getChunk(RECPFile.ChunkType.PROC).data.hasArray());
+		assertTrue(file.getChunk(RECPFile.ChunkType.PROC).getData().isReadOnly());
+	}
+	
+	@Test
+	void getStringChecksSizeTheSameWayForEveryBuffer() {
+		byte[] bytes = "Rice".getBytes(StandardCharsets.UTF_8);
+		for(ByteBuffer b : new ByteBuffer[] {ByteBuffer.wrap(bytes), ByteBuffer.allocateDirect(4).put(bytes).flip(), ByteBuffer.wrap(bytes).asReadOnlyBuffer()}) {
+			assertThrows(BufferUnderflowException.class, () -> Recipe.getString(b, 5, StandardCharsets.UTF_8));
+			assertThrows(BufferUnderflowException.class, () -> Recipe.getString(b, -1, StandardCharsets.UTF_8));
+			assertEquals(0, b.position());
+			assertEquals("Rice", Recipe.getString(b, 4, StandardCharsets.UTF_8));
+			assertEquals(4, b.position());
+		}
+	}
+}
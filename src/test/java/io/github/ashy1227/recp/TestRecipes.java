@@ -0,0 +1,65 @@
+package io.github.ashy1227.recp;
+
+import java.util.List;
+
+/**
+ * Recipes shared by the tests
+ */
+final class TestRecipes {
+	private TestRecipes() {}
+	
+	static Recipe brownRice() {
+		return new Recipe(
+			List.of(
+				new Ingredient(Unit.CUSTOMARY_CUP, new Fraction((short) 3, (short) 2), "Rice"),
+				new Ingredient(Unit.CUSTOMARY_CUP, new Fraction((short) 2, (short) 1), "Water"),
+				new Ingredient(Unit.CUSTOMARY_DASH, new Fraction((short) 1), "Salt"),
+				new Ingredient(Unit.CUSTOMARY_DROP, new Fraction((short) 3), "Brown food coloring")
+			),
+			List.of(
+				"Boil water",
+				"Add salt",
+				"Add rice",
+				"Wait like 20 minutes",
+				"Drain the rice",
+				"Add brown food coloring"
+			),
+			"Brown Rice",
+			"Healthy and nutritious brown rice",
+			"Brown rice made at home from white rice, for when the real thing is too expensive. Works with any long grain rice.",
+			List.of("Healthy", "Breakfast", "Rice")
+		);
+	}
+	
+	static Recipe pancakes() {
+		return new Recipe(
+			List.of(
+				new Ingredient(Unit.GRAM, new Fraction((short) 200), "Flour"),
+				new Ingredient(Unit.MILLILITER, new Fraction((short) 300), "Milk"),
+				new Ingredient(Unit.CUSTOMARY_PINCH, new Fraction((short) 1), "Salt")
+			),
+			List.of(
+				"Whisk everything together",
+				"Fry in a hot pan"
+			),
+			"Pancakes",
+			"Crêpe-thin pancakes",
+			null,
+			List.of("Breakfast", "Sweet")
+		);
+	}
+	
+	static Recipe soup() {
+		return new Recipe(
+			List.of(
+				new Ingredient(Unit.LITER, new Fraction((short) 1), "Water"),
+				new Ingredient(Unit.GRAM, new Fraction((short) 500), "Pumpkin")
+			),
+			List.of("Boil", "Blend"),
+			"Pumpkin soup",
+			null,
+			null,
+			List.of("Dinner")
+		);
+	}
+}